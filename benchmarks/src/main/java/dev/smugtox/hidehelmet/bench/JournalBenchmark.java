@@ -0,0 +1,144 @@
+package dev.smugtox.hidehelmet.bench;
+
+import dev.smugtox.hidehelmet.HideArmorState;
+import dev.smugtox.hidehelmet.storage.MaskBatch;
+import dev.smugtox.hidehelmet.storage.MaskJournal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Commit del journal (N jugadores con cambios o uno solo), compactacion (reescribe el snapshot entero),
+ * apertura del store y lookup de un jugador, con 10k..1M jugadores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class JournalBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int players;
+
+    private Path dir;
+    private MaskJournal journal;
+    private UUID[] uuids;
+    private int round;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("hidehelmet-journal-bench");
+        journal = new MaskJournal(dir);
+        journal.open();
+
+        uuids = new UUID[players];
+        for (int i = 0; i < players; i++) {
+            uuids[i] = UUID.randomUUID();
+            HideArmorState.setMask(uuids[i], 1 + (i % 15));
+        }
+        commit();
+        journal.compact();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        journal.close();
+        for (UUID uuid : uuids) {
+            HideArmorState.setMaskSilently(uuid, 0);
+        }
+        try (var files = Files.list(dir)) {
+            for (Path p : (Iterable<Path>) files::iterator) Files.deleteIfExists(p);
+        }
+        Files.deleteIfExists(dir);
+    }
+
+    @State(Scope.Benchmark)
+    public static class OneChange {
+        @Setup(Level.Invocation)
+        public void setup(JournalBenchmark b) {
+            b.round++;
+            HideArmorState.toggleSlot(b.uuids[b.round % b.players], HideArmorState.SLOT_HEAD);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class AllChanged {
+        @Setup(Level.Invocation)
+        public void setup(JournalBenchmark b) {
+            b.round++;
+            for (int i = 0; i < b.players; i++) {
+                HideArmorState.setMask(b.uuids[i], 1 + ((i + b.round) % 15));
+            }
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class OneCommitted {
+        @Setup(Level.Invocation)
+        public void setup(JournalBenchmark b) throws IOException {
+            b.round++;
+            HideArmorState.toggleSlot(b.uuids[b.round % b.players], HideArmorState.SLOT_HEAD);
+            b.commit();
+        }
+    }
+
+    @Benchmark
+    public int commitOneChange(OneChange change) throws IOException {
+        return commit();
+    }
+
+    @Benchmark
+    public int commitAllChanged(AllChanged change) throws IOException {
+        return commit();
+    }
+
+    @Benchmark
+    public long compact(OneCommitted change) throws IOException {
+        return journal.compact();
+    }
+
+    @Benchmark
+    public long open() throws IOException {
+        MaskJournal fresh = new MaskJournal(dir);
+        try {
+            return fresh.open();
+        } finally {
+            fresh.close();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    public int lookup() throws IOException {
+        round++;
+        return journal.lookup(uuids[(round * 7919) % players]);
+    }
+
+    // Lo mismo que hace el plugin al guardar
+    private int commit() throws IOException {
+        MaskBatch batch = new MaskBatch();
+        HideArmorState.drainChanges(batch::add);
+        return journal.append(batch);
+    }
+}
@@ -0,0 +1,139 @@
+package dev.smugtox.hidehelmet.bench;
+
+import com.hypixel.hytale.protocol.ComponentUpdate;
+import com.hypixel.hytale.protocol.ComponentUpdateType;
+import com.hypixel.hytale.protocol.EntityUpdate;
+import com.hypixel.hytale.protocol.Equipment;
+import com.hypixel.hytale.protocol.Packet;
+import com.hypixel.hytale.protocol.packets.entities.EntityUpdates;
+import com.hypixel.hytale.server.core.receiver.IPacketReceiver;
+import dev.smugtox.hidehelmet.HideArmorState;
+import dev.smugtox.hidehelmet.IntSet;
+import dev.smugtox.hidehelmet.filter.FilterPipeline;
+import dev.smugtox.hidehelmet.net.HideArmorFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coste por packet de FilterPipeline.write / writeNoCache con HideArmorFilter como unico filtro.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PacketReceiverBenchmark {
+
+    private static final int SELF_NETWORK_ID = 7;
+
+    @Param({"1", "50", "500"})
+    public int entities;
+
+    @Param({"true", "false"})
+    public boolean selfEquipment;
+
+    @Param({"5"})
+    public int mask;
+
+    // 15 = modo others: todas las entidades del batch son jugadores con la armadura oculta
+    @Param({"0", "15"})
+    public int othersMask;
+
+    private UUID viewer;
+    private FilterPipeline receiver;
+    private EntityUpdates packet;
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        viewer = UUID.randomUUID();
+        HideArmorState.setMaskSilently(viewer, mask);
+        receiver = new FilterPipeline(new BlackholeReceiver(blackhole));
+        HideArmorFilter filter = new HideArmorFilter(receiver, viewer, SELF_NETWORK_ID);
+        receiver.add(filter);
+        packet = buildPacket(entities, selfEquipment);
+
+        IntSet players = new IntSet();
+        for (EntityUpdate upd : packet.updates) {
+            if (upd.networkId != SELF_NETWORK_ID) players.add(upd.networkId);
+        }
+        filter.setWorldPlayers(players);
+        HideArmorState.setOthersMask(viewer, othersMask);
+    }
+
+    @TearDown
+    public void tearDown() {
+        HideArmorState.setMaskSilently(viewer, 0);
+        HideArmorState.releaseHandle(viewer);
+    }
+
+    @Benchmark
+    public void write() {
+        receiver.write(packet);
+    }
+
+    @Benchmark
+    public void writeNoCache() {
+        receiver.writeNoCache(packet);
+    }
+
+    static EntityUpdates buildPacket(int entities, boolean selfEquipment) {
+        EntityUpdate[] updates = new EntityUpdate[entities];
+        // el propio jugador en medio del batch, el resto con su propio Equipment
+        int selfIndex = selfEquipment ? entities / 2 : -1;
+        for (int i = 0; i < entities; i++) {
+            EntityUpdate upd = new EntityUpdate();
+            upd.networkId = i == selfIndex ? SELF_NETWORK_ID : 1000 + i;
+            upd.updates = new ComponentUpdate[] { equipmentUpdate() };
+            updates[i] = upd;
+        }
+
+        EntityUpdates eu = new EntityUpdates();
+        eu.updates = updates;
+        return eu;
+    }
+
+    private static ComponentUpdate equipmentUpdate() {
+        Equipment eq = new Equipment();
+        eq.armorIds = new String[] {"Armor_Iron_Head", "Armor_Iron_Chest", "Armor_Iron_Hands", "Armor_Iron_Legs"};
+        eq.rightHandItemId = "Weapon_Sword_Iron";
+        eq.leftHandItemId = "";
+
+        ComponentUpdate cu = new ComponentUpdate();
+        cu.type = ComponentUpdateType.Equipment;
+        cu.equipment = eq;
+        return cu;
+    }
+
+    static final class BlackholeReceiver implements IPacketReceiver {
+        private final Blackhole blackhole;
+
+        BlackholeReceiver(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void write(Packet packet) {
+            blackhole.consume(packet);
+        }
+
+        @Override
+        public void writeNoCache(Packet packet) {
+            blackhole.consume(packet);
+        }
+    }
+}
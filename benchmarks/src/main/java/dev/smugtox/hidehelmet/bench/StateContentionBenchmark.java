@@ -0,0 +1,82 @@
+package dev.smugtox.hidehelmet.bench;
+
+import dev.smugtox.hidehelmet.HideArmorState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * getMask / setMask / toggleSlot con 1..64 hilos sobre el mismo conjunto de jugadores.
+ * Cada subclase fija el numero de hilos.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public abstract class StateContentionBenchmark {
+
+    private static final int PLAYERS = 1024;
+
+    @State(Scope.Benchmark)
+    public static class Players {
+        final UUID[] uuids = new UUID[PLAYERS];
+
+        @Setup
+        public void setup() {
+            for (int i = 0; i < PLAYERS; i++) {
+                uuids[i] = UUID.randomUUID();
+                HideArmorState.setMaskSilently(uuids[i], i & 15);
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+
+        int nextIndex() {
+            next = (next + 1) & (PLAYERS - 1);
+            return next;
+        }
+    }
+
+    @Benchmark
+    public int getMask(Players players, Cursor cursor) {
+        return HideArmorState.getMask(players.uuids[cursor.nextIndex()]);
+    }
+
+    @Benchmark
+    public void setMask(Players players, Cursor cursor) {
+        int i = cursor.nextIndex();
+        HideArmorState.setMaskSilently(players.uuids[i], (i + cursor.next) & 15);
+    }
+
+    @Benchmark
+    public int toggleSlot(Players players, Cursor cursor) {
+        return HideArmorState.toggleSlot(players.uuids[cursor.nextIndex()], HideArmorState.SLOT_HEAD);
+    }
+
+    @Threads(1)
+    public static class T1 extends StateContentionBenchmark {}
+
+    @Threads(4)
+    public static class T4 extends StateContentionBenchmark {}
+
+    @Threads(16)
+    public static class T16 extends StateContentionBenchmark {}
+
+    @Threads(64)
+    public static class T64 extends StateContentionBenchmark {}
+}
@@ -1,9 +1,16 @@
 package dev.smugtox.hidehelmet;
 
+import dev.smugtox.hidehelmet.change.ChangeCause;
+import dev.smugtox.hidehelmet.change.ChangeFeed;
+import dev.smugtox.hidehelmet.change.ChangeListener;
+import dev.smugtox.hidehelmet.change.MaskChange;
+
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public final class HideArmorState {
 
@@ -12,26 +19,149 @@ public final class HideArmorState {
     public static final int SLOT_HANDS = 2;
     public static final int SLOT_LEGS = 3;
 
-    private static final ConcurrentHashMap<UUID, Integer> MASKS = new ConcurrentHashMap<>();
-    private static volatile Runnable onChange;
+    private static final MaskTable MASKS = new MaskTable();
+    private static final ConcurrentHashMap<UUID, MaskHandle> HANDLES = new ConcurrentHashMap<>();
+    // Handles (jugadores conectados) con mascara != 0; se actualiza en cada escritura de handle.mask
+    private static final AtomicInteger MASKED_ONLINE = new AtomicInteger();
+    // serializa las escrituras de un mismo jugador (tabla + handle) y hace atomico toggleSlot
+    private static final Object[] WRITE_LOCKS = new Object[64];
+
+    static {
+        for (int i = 0; i < WRITE_LOCKS.length; i++) {
+            WRITE_LOCKS[i] = new Object();
+        }
+    }
+    private static final ChangeFeed FEED = new ChangeFeed();
+    private static volatile ChangeListener onChange;
 
     private HideArmorState() {}
 
+    /**
+     * Se llama en cada cambio que hay que guardar (ver ChangeCause.isPersistent).
+     * Se mantiene por compatibilidad: para saber que cambio, usar subscribe.
+     */
     public static void setOnChange(Runnable callback) {
-        onChange = callback;
+        ChangeListener listener = callback == null ? null : change -> {
+            if (change.getCause().isPersistent()) callback.run();
+        };
+        ChangeListener previous = onChange;
+        onChange = listener;
+        if (previous != null) FEED.unsubscribe(previous);
+        if (listener != null) FEED.subscribe(listener);
+    }
+
+    /**
+     * Recibe cada cambio real de mascara (uuid, anterior, nueva, causa). Escribir la misma mascara no publica nada.
+     */
+    public static void subscribe(ChangeListener listener) {
+        FEED.subscribe(listener);
+    }
+
+    public static void unsubscribe(ChangeListener listener) {
+        FEED.unsubscribe(listener);
+    }
+
+    /**
+     * Handle del jugador, para leer su mascara sin buscar en la tabla.
+     * Se mantiene actualizado hasta releaseHandle.
+     */
+    public static MaskHandle handle(UUID uuid) {
+        synchronized (writeLock(uuid)) {
+            MaskHandle handle = HANDLES.computeIfAbsent(uuid, MaskHandle::new);
+            setHandleMask(handle, getMask(uuid));
+            return handle;
+        }
+    }
+
+    public static void releaseHandle(UUID uuid) {
+        synchronized (writeLock(uuid)) {
+            MaskHandle handle = HANDLES.remove(uuid);
+            if (handle != null) setHandleMask(handle, 0);
+        }
+    }
+
+    /**
+     * Jugadores con handle y alguna pieza oculta. Una lectura volatile: sirve de filtro en handlers calientes.
+     */
+    public static int maskedOnline() {
+        return MASKED_ONLINE.get();
+    }
+
+    public static boolean hasHandle(UUID uuid) {
+        return HANDLES.containsKey(uuid);
     }
 
     public static int getMask(UUID uuid) {
-        Integer mask = MASKS.get(uuid);
-        return mask == null ? 0 : mask;
+        return MASKS.get(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
     }
 
     public static void setMask(UUID uuid, int mask) {
-        setMaskInternal(uuid, mask, true);
+        setMask(uuid, mask, ChangeCause.API);
+    }
+
+    public static void setMask(UUID uuid, int mask, ChangeCause cause) {
+        setMaskInternal(uuid, mask, cause);
+    }
+
+    /**
+     * La misma mascara para muchos jugadores (operaciones de admin): cada uno bajo su writeLock
+     * y un solo drain del feed al final. Los que no estan en memoria se escriben igual: la mascara
+     * es absoluta y se guarda aunque sea 0, asi que no hace falta leerlos antes del backend.
+     * @return jugadores cuya mascara en memoria cambio
+     */
+    public static int setMasks(Collection<UUID> uuids, int mask, ChangeCause cause) {
+        int clamped = Math.max(0, Math.min(15, mask));
+        int changed = 0;
+        for (UUID uuid : uuids) {
+            synchronized (writeLock(uuid)) {
+                if (store(uuid, clamped, cause) != clamped) changed++;
+            }
+        }
+        FEED.drain();
+        return changed;
     }
 
+    /**
+     * Para estado que ya esta persistido (carga): no marca el jugador para guardar.
+     */
     public static void setMaskSilently(UUID uuid, int mask) {
-        setMaskInternal(uuid, mask, false);
+        setMaskInternal(uuid, mask, ChangeCause.LOAD);
+    }
+
+    /**
+     * Aplica una mascara leida del backend (LOAD o REMOTE), salvo que el jugador tenga
+     * cambios sin guardar: esos son mas nuevos que lo que haya en el backend.
+     * @return false si se ignoro
+     */
+    public static boolean restore(UUID uuid, int mask, ChangeCause cause) {
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+        synchronized (writeLock(uuid)) {
+            int old = MASKS.get(msb, lsb);
+            if (!MASKS.putIfClean(msb, lsb, mask)) return false;
+            MaskHandle handle = HANDLES.get(uuid);
+            if (handle != null) setHandleMask(handle, mask);
+            offerChange(uuid, old, mask, cause);
+        }
+        FEED.drain();
+        return true;
+    }
+
+    /**
+     * Piezas que el jugador oculta en los demas jugadores (modo viewer). Solo de sesion:
+     * vive en el handle, no se guarda ni publica cambios, y se pierde al desconectar.
+     * @return false si el jugador no tiene handle
+     */
+    public static boolean setOthersMask(UUID uuid, int mask) {
+        MaskHandle handle = HANDLES.get(uuid);
+        if (handle == null) return false;
+        handle.othersMask = Math.max(0, Math.min(15, mask));
+        return true;
+    }
+
+    public static int getOthersMask(UUID uuid) {
+        MaskHandle handle = HANDLES.get(uuid);
+        return handle == null ? 0 : handle.othersMask;
     }
 
     public static boolean isHidden(UUID uuid, int slot) {
@@ -40,20 +170,67 @@ public final class HideArmorState {
     }
 
     public static int toggleSlot(UUID uuid, int slot) {
-        int mask = getMask(uuid);
-        int newMask = mask ^ (1 << slot);
-        setMask(uuid, newMask);
+        return toggleSlot(uuid, slot, ChangeCause.API);
+    }
+
+    public static int toggleSlot(UUID uuid, int slot, ChangeCause cause) {
+        int newMask;
+        synchronized (writeLock(uuid)) {
+            newMask = getMask(uuid) ^ (1 << slot);
+            store(uuid, newMask, cause);
+        }
+        FEED.drain();
         return newMask;
     }
 
     public static int setAll(UUID uuid, boolean hide) {
+        return setAll(uuid, hide, ChangeCause.API);
+    }
+
+    public static int setAll(UUID uuid, boolean hide, ChangeCause cause) {
         int newMask = hide ? 15 : 0;
-        setMask(uuid, newMask);
+        setMask(uuid, newMask, cause);
         return newMask;
     }
 
     public static Map<UUID, Integer> snapshot() {
-        return new HashMap<>(MASKS);
+        Map<UUID, Integer> out = new HashMap<>();
+        MASKS.forEach((msb, lsb, mask) -> out.put(new UUID(msb, lsb), mask));
+        return out;
+    }
+
+    /**
+     * Recorre los jugadores con mascara != 0 sin copiar el estado.
+     */
+    public static void forEachMask(MaskVisitor visitor) {
+        MASKS.forEach(visitor);
+    }
+
+    /**
+     * Entrega los jugadores cuya mascara cambio desde el ultimo drain (tambien los que pasaron a 0).
+     * El visitor no debe hacer I/O ni modificar el estado.
+     * @return jugadores entregados
+     */
+    public static int drainChanges(MaskVisitor visitor) {
+        return MASKS.drainDirty(visitor);
+    }
+
+    /**
+     * Saca de memoria a un jugador desconectado. No lo hace si tiene handle o cambios sin guardar.
+     * @return true si se quito (o no estaba)
+     */
+    public static boolean evict(UUID uuid) {
+        synchronized (writeLock(uuid)) {
+            if (HANDLES.containsKey(uuid)) return false;
+            return MASKS.evict(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+        }
+    }
+
+    /**
+     * Jugadores con mascara != 0 en memoria.
+     */
+    public static int size() {
+        return MASKS.size();
     }
 
     public static String formatMask(int mask) {
@@ -67,18 +244,39 @@ public final class HideArmorState {
         return out.toString();
     }
 
-    private static void setMaskInternal(UUID uuid, int mask, boolean notify) {
+    private static void setMaskInternal(UUID uuid, int mask, ChangeCause cause) {
         int clamped = Math.max(0, Math.min(15, mask));
-        if (clamped == 0) {
-            MASKS.remove(uuid);
-        } else {
-            MASKS.put(uuid, clamped);
+        synchronized (writeLock(uuid)) {
+            store(uuid, clamped, cause);
         }
+        FEED.drain();
+    }
 
-        if (notify) {
-            Runnable callback = onChange;
-            if (callback != null) callback.run();
-        }
+    // Llamar con el writeLock del jugador: el evento se encola en el mismo orden que la escritura
+    private static int store(UUID uuid, int mask, ChangeCause cause) {
+        int old = MASKS.put(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), mask, cause.isPersistent());
+        MaskHandle handle = HANDLES.get(uuid);
+        if (handle != null) setHandleMask(handle, mask);
+        offerChange(uuid, old, mask, cause);
+        return old;
+    }
+
+    // Llamar con el writeLock del jugador: mantiene MASKED_ONLINE al cruzar 0
+    private static void setHandleMask(MaskHandle handle, int mask) {
+        int old = handle.mask;
+        handle.mask = mask;
+        if (old == 0 && mask != 0) MASKED_ONLINE.incrementAndGet();
+        else if (old != 0 && mask == 0) MASKED_ONLINE.decrementAndGet();
+    }
+
+    private static void offerChange(UUID uuid, int oldMask, int newMask, ChangeCause cause) {
+        if (oldMask == newMask || !FEED.hasSubscribers()) return;
+        FEED.offer(new MaskChange(uuid, oldMask, newMask, cause));
+    }
+
+    private static Object writeLock(UUID uuid) {
+        long h = uuid.getMostSignificantBits() ^ uuid.getLeastSignificantBits();
+        return WRITE_LOCKS[(int) (h ^ (h >>> 32)) & (WRITE_LOCKS.length - 1)];
     }
 
     private static void appendIfSet(StringBuilder out, int mask, int slot, String label) {
@@ -86,4 +284,9 @@ public final class HideArmorState {
         if (out.length() > 0) out.append(", ");
         out.append(label);
     }
+
+    @FunctionalInterface
+    public interface MaskVisitor {
+        void accept(long uuidMostSigBits, long uuidLeastSigBits, int mask);
+    }
 }
@@ -1,8 +1,8 @@
 package dev.smugtox.hidehelmet;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.hypixel.hytale.protocol.InteractionType;
+import com.hypixel.hytale.server.core.event.events.player.PlayerConnectEvent;
+import com.hypixel.hytale.server.core.event.events.player.PlayerDisconnectEvent;
 import com.hypixel.hytale.server.core.event.events.player.PlayerReadyEvent;
 import com.hypixel.hytale.server.core.event.events.player.PlayerMouseButtonEvent;
 import com.hypixel.hytale.server.core.event.events.player.PlayerCraftEvent;
@@ -12,44 +12,110 @@ import com.hypixel.hytale.server.core.plugin.JavaPluginInit;
 import com.hypixel.hytale.server.core.entity.entities.Player;
 import com.hypixel.hytale.server.core.event.events.entity.LivingEntityInventoryChangeEvent;
 import com.hypixel.hytale.server.core.modules.entity.tracker.EntityTrackerSystems.EntityViewer;
+import com.hypixel.hytale.server.core.universe.world.World;
+import dev.smugtox.hidehelmet.change.ChangeCause;
 import dev.smugtox.hidehelmet.commands.HideArmorCommand;
+import dev.smugtox.hidehelmet.commands.HideHelmetAdminCommand;
 import dev.smugtox.hidehelmet.commands.HideHelmetCommand;
 import dev.smugtox.hidehelmet.commands.HideHelmetDebugCommand;
-import dev.smugtox.hidehelmet.net.HideHelmetPacketReceiver;
+import dev.smugtox.hidehelmet.commands.HideHelmetStatsCommand;
+import dev.smugtox.hidehelmet.commands.HideHelmetTuneCommand;
+import dev.smugtox.hidehelmet.config.ConfigFile;
+import dev.smugtox.hidehelmet.config.ConfigWatcher;
+import dev.smugtox.hidehelmet.config.PluginConfig;
+import dev.smugtox.hidehelmet.config.Tuning;
+import dev.smugtox.hidehelmet.filter.FilterPipeline;
+import dev.smugtox.hidehelmet.invalidate.AdaptiveCooldown;
+import dev.smugtox.hidehelmet.invalidate.InvalidateScheduler;
+import dev.smugtox.hidehelmet.jfr.SaveEvent;
+import dev.smugtox.hidehelmet.jfr.TriggerEvent;
+import dev.smugtox.hidehelmet.trace.DecisionTrace;
+import dev.smugtox.hidehelmet.trace.TraceKind;
+import dev.smugtox.hidehelmet.trace.Traces;
+import dev.smugtox.hidehelmet.trigger.TriggerAction;
+import dev.smugtox.hidehelmet.trigger.TriggerSource;
+import dev.smugtox.hidehelmet.metrics.Metrics;
+import dev.smugtox.hidehelmet.metrics.PrometheusFileExporter;
+import dev.smugtox.hidehelmet.net.HideArmorFilter;
+import dev.smugtox.hidehelmet.net.PlayerEntityIndex;
+import dev.smugtox.hidehelmet.rules.ArmorRules;
+import dev.smugtox.hidehelmet.rules.RulesFile;
+import dev.smugtox.hidehelmet.storage.JsonStateFile;
+import dev.smugtox.hidehelmet.storage.LocalStateBackend;
+import dev.smugtox.hidehelmet.storage.MaskBatch;
+import dev.smugtox.hidehelmet.storage.MaskJournal;
+import dev.smugtox.hidehelmet.storage.StateBackend;
+import dev.smugtox.hidehelmet.storage.remote.RemoteStateBackend;
+import dev.smugtox.hidehelmet.storage.remote.StateServer;
 
 import javax.annotation.Nonnull;
 import java.io.File;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
+import java.io.IOException;
 import java.nio.file.Path;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 
 public class HideHelmetPlugin extends JavaPlugin {
 
-    private static final int MAX_MASK = 15;
-    private static final long DEFAULT_INVALIDATE_COOLDOWN_MS = 150;
-    private static final boolean DEFAULT_PICKUP_IMMEDIATE = true;
+    private static final String DEFAULT_STATE_BACKEND = "file";
+    private static final String DEFAULT_REMOTE_HOST = "127.0.0.1";
+    private static final int DEFAULT_REMOTE_PORT = 25590;
+    private static final long DEFAULT_REMOTE_FLUSH_MS = 250;
+    private static final int DEFAULT_REMOTE_FLUSH_RECORDS = RemoteStateBackend.DEFAULT_FLUSH_RECORDS;
+    private static final long DEFAULT_JOURNAL_COMPACT_BYTES = MaskJournal.DEFAULT_MIN_COMPACT_BYTES;
+    private static final boolean DEFAULT_EMBEDDED_STATE_SERVER = false;
+    private static final long DEFAULT_METRICS_EXPORT_SECONDS = 0; // desactivado
+    private static final long LOAD_RETRY_MS = 1000;
 
     private final Object saveLock = new Object();
-    private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
 
-    private File dataFile;
+    private JsonStateFile stateFile;
+    private ConfigFile configFile;
+    private ConfigWatcher configWatcher;
+    // config.json tal y como se leyo; despues de setup solo se toca en saveExecutor
+    private PluginConfig config = new PluginConfig();
+    private RulesFile rulesFile;
+    private StateBackend backend;
+    private StateServer stateServer;
+    // cambios ya sacados de HideArmorState que el backend no acepto; se reintentan en el siguiente guardado
+    private final Object commitLock = new Object();
+    private MaskBatch unsaved;
     private ScheduledExecutorService saveExecutor;
-    private ScheduledExecutorService invalidateExecutor;
+    private InvalidateScheduler invalidateScheduler;
     private ScheduledFuture<?> pendingSave;
-    private boolean dirty;
-    private long invalidateCooldownMs = DEFAULT_INVALIDATE_COOLDOWN_MS;
-    private boolean pickupImmediate = DEFAULT_PICKUP_IMMEDIATE;
-    private final Map<UUID, Long> lastInvalidateByPlayer = new ConcurrentHashMap<>();
-    private final Map<UUID, ScheduledFuture<?>> pendingInvalidates = new ConcurrentHashMap<>();
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    // Carga de la mascara en curso por jugador (desde PlayerConnectEvent hasta PlayerReadyEvent)
+    private final Map<UUID, CompletableFuture<Void>> pendingLoads = new ConcurrentHashMap<>();
+    // Conectados cuya mascara aun no se leyo del backend: la carga se reintenta y sus toggles no se aceptan
+    private final Set<UUID> loading = ConcurrentHashMap.newKeySet();
+    // networkIds de los jugadores por mundo (modo others de HideArmorFilter)
+    private final PlayerEntityIndex playerEntities = new PlayerEntityIndex();
+    private final Object tuningLock = new Object();
+    // Parametros en caliente; se reemplaza entera (config.json o /hhtune), los handlers la leen una vez por evento
+    private volatile Tuning tuning = Tuning.DEFAULTS;
+    private String stateBackend = DEFAULT_STATE_BACKEND;
+    private String remoteHost = DEFAULT_REMOTE_HOST;
+    private int remotePort = DEFAULT_REMOTE_PORT;
+    private long remoteFlushMs = DEFAULT_REMOTE_FLUSH_MS;
+    private int remoteFlushRecords = DEFAULT_REMOTE_FLUSH_RECORDS;
+    private long journalCompactBytes = DEFAULT_JOURNAL_COMPACT_BYTES;
+    private boolean embeddedStateServer = DEFAULT_EMBEDDED_STATE_SERVER;
+    private long metricsExportSeconds = DEFAULT_METRICS_EXPORT_SECONDS;
+    private PrometheusFileExporter metricsExporter;
 
     public HideHelmetPlugin(@Nonnull JavaPluginInit init) {
         super(init);
@@ -58,97 +124,116 @@ public class HideHelmetPlugin extends JavaPlugin {
     @Override
     protected void setup() {
         initDataFile();
-        int loadedCount = loadStateFromDisk();
-        this.getLogger().at(Level.INFO).log("HideHelmet enabled (self-only). Loaded " + loadedCount + " players.");
-        HideArmorState.setOnChange(this::markDirtyAndScheduleSave);
+        long loadedCount = loadStateFromDisk();
+        this.getLogger().at(Level.INFO).log("HideHelmet enabled (self and others modes). " + loadedCount + " players on disk.");
+        // Solo los cambios reales que no vienen ya del backend programan un guardado
+        HideArmorState.subscribe(change -> {
+            if (change.getCause().isPersistent()) markDirtyAndScheduleSave();
+            Traces.record(change.getUuid(), TraceKind.MASK, change.getCause().name(), null, change.getNewMask());
+        });
         initInvalidateScheduler();
+        initMetrics();
+        initConfigWatcher();
+        reloadRules();
 
         // Commands
         this.getCommandRegistry().registerCommand(
-                new HideHelmetCommand("hidehelmet", "Toggle helmet visibility")
+                new HideHelmetCommand("hidehelmet", "Toggle helmet visibility", invalidateScheduler, loading::contains)
+        );
+
+        this.getCommandRegistry().registerCommand(
+                new HideArmorCommand("hidearmor", "Toggle armor visibility", invalidateScheduler, playerEntities,
+                        loading::contains)
+        );
+
+        this.getCommandRegistry().registerCommand(
+                new HideHelmetDebugCommand("hhdebug", "Print armor slot indices", this::reload)
+        );
+
+        this.getCommandRegistry().registerCommand(
+                new HideHelmetStatsCommand("hhstats", "Print HideHelmet counters and latencies")
         );
 
         this.getCommandRegistry().registerCommand(
-                new HideArmorCommand("hidearmor", "Toggle armor visibility")
+                new HideHelmetTuneCommand("hhtune", "Change HideHelmet tuning at runtime", () -> tuning, this::tune)
         );
 
         this.getCommandRegistry().registerCommand(
-                new HideHelmetDebugCommand("hhdebug", "Print armor slot indices")
+                new HideHelmetAdminCommand("hhadmin", "Apply armor visibility to many players", playerEntities, this::applyBulk)
         );
 
+        // La mascara se lee del disco al conectar, fuera del hilo del mundo
+        this.getEventRegistry().registerGlobal(PlayerConnectEvent.class, (event) -> {
+            if (backend == null || saveExecutor == null) return;
+            UUID uuid = event.getPlayerRef().getUuid();
+            loading.add(uuid);
+            pendingLoads.put(uuid, loadPlayer(uuid, false));
+        });
+
         // Install packet wrapper per player when they are ready
         this.getEventRegistry().registerGlobal(PlayerReadyEvent.class, (event) -> {
             Player player = event.getPlayer();
             var world = player.getWorld();
             if (world == null) return;
 
-            world.execute(() -> {
-                try {
-                    // Obtener viewer component y envolver su packetReceiver
-                    var store = world.getEntityStore().getStore();
-                    var ref = player.getReference();
-
-                    EntityViewer viewer = store.getComponent(ref, EntityViewer.getComponentType());
-                    if (viewer == null || viewer.packetReceiver == null) return;
-
-                    // Evitar doble wrap
-                    if (!(viewer.packetReceiver instanceof HideHelmetPacketReceiver)) {
-                        viewer.packetReceiver = new HideHelmetPacketReceiver(
-                                viewer.packetReceiver,
-                                player.getPlayerRef().getUuid(),
-                                player.getNetworkId()
-                        );
-                    }
-
-                    if (HideArmorState.getMask(player.getPlayerRef().getUuid()) != 0) {
-                        try {
-                            player.invalidateEquipmentNetwork();
-                        } catch (Throwable ignored) {}
-                    }
+            // Si la carga aun no termino, envolvemos cuando termine
+            CompletableFuture<Void> load = pendingLoads.remove(player.getPlayerRef().getUuid());
+            if (load == null || load.isDone()) {
+                world.execute(() -> installReceiver(player, world));
+            } else {
+                load.whenComplete((ignored, error) -> world.execute(() -> installReceiver(player, world)));
+            }
+        });
 
-                } catch (Throwable t) {
-                    // Si algo cambia en el SDK, evitamos crashear el server
-                }
-            });
+        // Al desconectar: fuera de memoria todo lo del jugador, tras guardar sus cambios
+        this.getEventRegistry().registerGlobal(PlayerDisconnectEvent.class, (event) -> {
+            UUID uuid = event.getPlayerRef().getUuid();
+            pendingLoads.remove(uuid);
+            loading.remove(uuid);
+            HideArmorState.releaseHandle(uuid);
+            playerEntities.untrack(uuid);
+            if (invalidateScheduler != null) {
+                invalidateScheduler.forget(uuid);
+            }
+            if (saveExecutor != null) {
+                saveExecutor.execute(() -> evictPlayer(uuid));
+            }
         });
 
         // Fallback: re-aplicar hide cuando cambie inventario (el cliente rehidrata armadura).
+        // Estos handlers saltan en cada click / craft del servidor: sin nadie conectado ocultando nada
+        // salen con una sola lectura volatile (el registry no permite quitarlos y volverlos a poner).
         this.getEventRegistry().registerGlobal(LivingEntityInventoryChangeEvent.class, (event) -> {
+            if (HideArmorState.maskedOnline() == 0) return;
             if (!(event.getEntity() instanceof Player player)) return;
-            requestEquipmentInvalidate(player, false);
+            traceTrigger("LivingEntityInventoryChangeEvent", player, null);
+            trigger(player, tuning.getTriggers().action(TriggerSource.INVENTORY_CHANGE));
         });
 
         // Acciones rápidas (clicks, ataque, romper bloques) pueden re-sincronizar visual del equipo.
         this.getEventRegistry().registerGlobal(PlayerMouseButtonEvent.class, (event) -> {
+            if (HideArmorState.maskedOnline() == 0) return;
             Player player = event.getPlayer();
-            requestEquipmentInvalidate(player, false);
+            traceTrigger("PlayerMouseButtonEvent", player, null);
+            trigger(player, tuning.getTriggers().action(TriggerSource.MOUSE_BUTTON));
         });
 
         this.getEventRegistry().registerGlobal(PlayerCraftEvent.class, (event) -> {
+            if (HideArmorState.maskedOnline() == 0) return;
             Player player = event.getPlayer();
-            requestEquipmentInvalidate(player, false);
+            traceTrigger("PlayerCraftEvent", player, null);
+            trigger(player, tuning.getTriggers().action(TriggerSource.CRAFT));
         });
 
         this.getEventRegistry().registerGlobal(PlayerInteractEvent.class, (event) -> {
+            if (HideArmorState.maskedOnline() == 0) return;
             Player player = event.getPlayer();
             if (player == null) return;
-            if (HideArmorState.getMask(player.getPlayerRef().getUuid()) == 0) return;
+            traceTrigger("PlayerInteractEvent", player, event.getActionType());
 
             InteractionType type = event.getActionType();
             if (type == null) return;
-
-            if (type == InteractionType.Pickup) {
-                requestEquipmentInvalidate(player, pickupImmediate);
-            } else if (type == InteractionType.Primary
-                    || type == InteractionType.Secondary
-                    || type == InteractionType.Use
-                    || type == InteractionType.Pick
-                    || type == InteractionType.SwapTo
-                    || type == InteractionType.SwapFrom
-                    || type == InteractionType.Wielding
-                    || type == InteractionType.Equipped) {
-                requestEquipmentInvalidate(player, false);
-            }
+            trigger(player, tuning.getTriggers().action(type));
         });
     }
 
@@ -156,14 +241,129 @@ public class HideHelmetPlugin extends JavaPlugin {
     protected void shutdown() {
         int savedCount = saveStateToDisk();
         this.getLogger().at(Level.INFO).log("HideHelmet disabled. Saved " + savedCount + " players.");
+        if (configWatcher != null) {
+            try {
+                configWatcher.close();
+            } catch (Exception e) {
+                System.err.println("HideHelmet: Failed to stop config watcher: " + e.getMessage());
+            }
+        }
+        if (backend != null) {
+            try {
+                backend.close();
+            } catch (Exception e) {
+                System.err.println("HideHelmet: Failed to close state backend: " + e.getMessage());
+            }
+        }
+        if (stateServer != null) {
+            try {
+                stateServer.close();
+            } catch (Exception e) {
+                System.err.println("HideHelmet: Failed to close state server: " + e.getMessage());
+            }
+        }
         if (saveExecutor != null) {
             saveExecutor.shutdownNow();
         }
-        if (invalidateExecutor != null) {
-            invalidateExecutor.shutdownNow();
+        if (invalidateScheduler != null) {
+            invalidateScheduler.shutdown();
+        }
+        if (metricsExporter != null) {
+            metricsExporter.shutdown();
         }
     }
 
+    private void installReceiver(Player player, World world) {
+        try {
+            // Obtener viewer component e instalar la pipeline de filtros en su packetReceiver
+            var store = world.getEntityStore().getStore();
+            var ref = player.getReference();
+
+            EntityViewer viewer = store.getComponent(ref, EntityViewer.getComponentType());
+            if (viewer == null || viewer.packetReceiver == null) return;
+
+            MaskHandle handle = HideArmorState.handle(player.getPlayerRef().getUuid());
+
+            // Una sola pipeline por viewer (compartida con otros plugins) y un solo filtro nuestro en ella
+            FilterPipeline pipeline = FilterPipeline.install(viewer);
+            HideArmorFilter filter = pipeline.getFilter(HideArmorFilter.class);
+            if (filter == null) {
+                filter = new HideArmorFilter(pipeline, handle, player.getNetworkId());
+                pipeline.add(filter);
+            }
+            playerEntities.track(player, world);
+            filter.setWorldPlayers(playerEntities.world(world));
+            invalidateScheduler.bindFilter(player, filter);
+
+            if (handle.getMask() != 0) {
+                try {
+                    filter.allowNextResend();
+                    player.invalidateEquipmentNetwork();
+                } catch (Throwable ignored) {}
+            }
+
+        } catch (Throwable t) {
+            // Si algo cambia en el SDK, evitamos crashear el server
+        }
+    }
+
+    /**
+     * Pide la mascara guardada de un jugador que se conecta. La peticion sale de saveExecutor,
+     * detras de cualquier guardado de ese jugador que ya estuviera en cola (cambio rapido de nodo).
+     * Si falla (backend remoto sin conexion) se reintenta cada LOAD_RETRY_MS mientras siga conectado;
+     * el futuro se completa con el primer intento para no retrasar la instalacion del filtro.
+     */
+    private CompletableFuture<Void> loadPlayer(UUID uuid, boolean retry) {
+        long start = System.nanoTime();
+        return CompletableFuture.supplyAsync(() -> uuid, saveExecutor)
+                .thenCompose(backend::get)
+                .thenAccept(mask -> {
+                    boolean applied = HideArmorState.restore(uuid, mask, ChangeCause.LOAD);
+                    loading.remove(uuid);
+                    Metrics.LOADS.increment();
+                    if (mask != 0) Metrics.LOADED_RECORDS.increment();
+                    Metrics.LOAD_TIME.recordSince(start);
+                    // Reintento con el filtro ya instalado: hay que reenviar el Equipment con la mascara leida
+                    if (retry && applied && mask != 0 && invalidateScheduler != null && HideArmorState.hasHandle(uuid)) {
+                        invalidateScheduler.request(uuid, InvalidateScheduler.Priority.COMMAND);
+                    }
+                })
+                .exceptionally(error -> {
+                    if (!retry) {
+                        System.err.println("HideHelmet: Failed to load player " + uuid + ": " + error.getMessage() + " (retrying)");
+                    }
+                    scheduleLoadRetry(uuid);
+                    return null;
+                });
+    }
+
+    private void scheduleLoadRetry(UUID uuid) {
+        if (!loading.contains(uuid)) return;
+        try {
+            saveExecutor.schedule(() -> {
+                if (loading.contains(uuid)) loadPlayer(uuid, true);
+            }, LOAD_RETRY_MS, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ignored) {
+            // apagando
+        }
+    }
+
+    /**
+     * Guarda los cambios pendientes y quita al jugador de memoria. Corre en saveExecutor.
+     * Con backend remoto espera a que el cambio llegue al servidor: el siguiente nodo lo va a leer.
+     */
+    private void evictPlayer(UUID uuid) {
+        saveStateToDisk();
+        if (backend != null) {
+            try {
+                backend.flush();
+            } catch (Exception e) {
+                System.err.println("HideHelmet: Failed to flush state: " + e.getMessage());
+            }
+        }
+        HideArmorState.evict(uuid);
+    }
+
     private void initDataFile() {
         Path dataDir = getDataDirectory();
         if (dataDir == null) return;
@@ -173,17 +373,15 @@ public class HideHelmetPlugin extends JavaPlugin {
             dir.mkdirs();
         }
 
-        dataFile = new File(dir, "players.json");
-        if (!dataFile.exists()) {
+        stateFile = new JsonStateFile(new File(dir, "players.json").toPath());
+        configFile = new ConfigFile(new File(dir, "config.json").toPath());
+
+        rulesFile = new RulesFile(new File(dir, "rules.json").toPath());
+        if (!rulesFile.exists()) {
             try {
-                String seed = "{\"players\":{},\"config\":{\"invalidateCooldownMs\":"
-                        + DEFAULT_INVALIDATE_COOLDOWN_MS
-                        + ",\"pickupImmediate\":"
-                        + DEFAULT_PICKUP_IMMEDIATE
-                        + "}}";
-                Files.writeString(dataFile.toPath(), seed, StandardCharsets.UTF_8);
+                rulesFile.writeSeed();
             } catch (Exception e) {
-                System.err.println("HideHelmet: Failed to create players.json: " + e.getMessage());
+                System.err.println("HideHelmet: Failed to create rules.json: " + e.getMessage());
             }
         }
 
@@ -195,164 +393,364 @@ public class HideHelmetPlugin extends JavaPlugin {
     }
 
     private void initInvalidateScheduler() {
-        invalidateExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
-            Thread t = new Thread(r, "HideHelmet-Invalidate");
-            t.setDaemon(true);
-            return t;
-        });
+        invalidateScheduler = new InvalidateScheduler(tuning.getInvalidateCooldownMs());
+        applyTuning(tuning);
     }
 
-    private void markDirtyAndScheduleSave() {
-        dirty = true;
-        if (saveExecutor == null) return;
+    private void initConfigWatcher() {
+        if (configFile == null || saveExecutor == null) return;
+        try {
+            configWatcher = new ConfigWatcher(configFile.getPath(), () -> saveExecutor.execute(this::reloadConfig));
+            configWatcher.start();
+        } catch (Exception e) {
+            System.err.println("HideHelmet: Failed to watch config.json: " + e.getMessage());
+        }
+    }
 
-        synchronized (saveLock) {
-            if (pendingSave == null || pendingSave.isDone()) {
-                pendingSave = saveExecutor.schedule(this::saveStateToDisk, 1500, TimeUnit.MILLISECONDS);
+    /**
+     * Publica una Tuning: scheduler, filtros y el snapshot que leen handlers y guardado.
+     * Bajo tuningLock para que /hhtune y una recarga de config.json no se mezclen.
+     */
+    private void applyTuning(Tuning next) {
+        synchronized (tuningLock) {
+            if (invalidateScheduler != null) {
+                invalidateScheduler.setCooldownMs(next.getInvalidateCooldownMs());
+                invalidateScheduler.setSelfRefresh(next.isSelfRefresh());
+                invalidateScheduler.setBudget(next.getInvalidateBudgetPer10Ms(), next.getInvalidateBudgetPer10Ms() * 2);
+                invalidateScheduler.setAdaptiveCooldown(next.isAdaptiveCooldown()
+                        ? new AdaptiveCooldown(next.getMinInvalidateCooldownMs(), next.getMaxInvalidateCooldownMs())
+                        : null);
             }
+            HideArmorFilter.setDedupWindowMs(next.getDedupWindowMs());
+            tuning = next;
         }
     }
 
-    private int loadStateFromDisk() {
-        if (dataFile == null || !dataFile.exists()) return 0;
+    /**
+     * /hhtune: aplica todos los cambios o ninguno y los guarda en config.json (en saveExecutor).
+     * @throws IllegalArgumentException con el primer cambio invalido; no se aplica nada
+     */
+    private Tuning tune(Map<String, String> changes) {
+        Tuning next;
+        synchronized (tuningLock) {
+            next = tuning;
+            for (Map.Entry<String, String> change : changes.entrySet()) {
+                next = next.with(change.getKey(), change.getValue());
+            }
+            applyTuning(next);
+        }
+        this.getLogger().at(Level.INFO).log("HideHelmet: tuning changed " + changes + ".");
+        if (saveExecutor != null) saveExecutor.execute(this::persistTuning);
+        return next;
+    }
 
+    private void persistTuning() {
+        tuning.writeTo(config);
         try {
-            String json = Files.readString(dataFile.toPath(), StandardCharsets.UTF_8);
-            SaveModel model = gson.fromJson(json, SaveModel.class);
-            if (model == null) return 0;
-            if (model.config != null) {
-                if (model.config.invalidateCooldownMs != null && model.config.invalidateCooldownMs > 0) {
-                    invalidateCooldownMs = model.config.invalidateCooldownMs;
-                }
-                if (model.config.pickupImmediate != null) {
-                    pickupImmediate = model.config.pickupImmediate;
-                }
-            }
-            if (model.players == null) return 0;
+            configFile.write(config);
+        } catch (Exception e) {
+            System.err.println("HideHelmet: Failed to save config.json: " + e.getMessage());
+        }
+    }
+
+    private void initMetrics() {
+        Metrics.gauge("hidehelmet_masks_in_memory", "Jugadores con alguna pieza oculta en memoria", HideArmorState::size);
+        Metrics.gauge("hidehelmet_masked_online", "Jugadores conectados con alguna pieza oculta", HideArmorState::maskedOnline);
+        Metrics.gauge("hidehelmet_pending_loads", "Jugadores conectados cuya mascara aun no se leyo", loading::size);
+
+        Path dataDir = getDataDirectory();
+        if (metricsExportSeconds <= 0 || dataDir == null) return;
+        metricsExporter = new PrometheusFileExporter(dataDir.resolve("metrics.prom"));
+        metricsExporter.start(metricsExportSeconds);
+    }
+
+    /**
+     * /hhdebug reload: config.json y rules.json, fuera del hilo del mundo.
+     */
+    private CompletableFuture<String> reload() {
+        if (saveExecutor == null) return CompletableFuture.completedFuture("nothing to reload");
+        return CompletableFuture.runAsync(this::reloadConfig, saveExecutor)
+                .thenCompose(ignored -> reloadRules())
+                .thenApply(count -> count + " armor rules active, config.json reloaded");
+    }
 
-            int loaded = 0;
-            for (Map.Entry<String, Integer> entry : model.players.entrySet()) {
-                Integer mask = entry.getValue();
-                if (mask == null) continue;
+    /**
+     * Relee config.json y publica su Tuning. Corre en saveExecutor. Las claves de arranque
+     * (backend, red, metricas) se ignoran hasta reiniciar.
+     */
+    private void reloadConfig() {
+        if (configFile == null) return;
+        PluginConfig loaded;
+        try {
+            loaded = configFile.load();
+        } catch (Exception e) {
+            // se queda la config en uso
+            System.err.println("HideHelmet: Failed to reload config.json: " + e.getMessage());
+            return;
+        }
+        Tuning next = Tuning.from(loaded);
+        // nuestras propias escrituras (/hhtune) tambien despiertan al watcher: solo se avisa si algo cambio
+        boolean changed = !next.describe().equals(tuning.describe()) || !Objects.equals(loaded.triggers, config.triggers);
+        config = loaded;
+        applyTuning(next);
+        if (changed) this.getLogger().at(Level.INFO).log("HideHelmet: config.json reloaded.");
+    }
 
-                int clamped = Math.max(0, Math.min(MAX_MASK, mask));
-                if (clamped == 0) continue;
+    /**
+     * Lee y compila rules.json en saveExecutor (fuera del hilo del mundo), publica las reglas
+     * y reenvia el Equipment a los jugadores conectados con alguna pieza oculta.
+     * @return reglas activas
+     */
+    private CompletableFuture<Integer> reloadRules() {
+        if (rulesFile == null || saveExecutor == null) return CompletableFuture.completedFuture(0);
+        return CompletableFuture.supplyAsync(() -> {
+            ArmorRules rules;
+            try {
+                rules = rulesFile.load();
+            } catch (Exception e) {
+                System.err.println("HideHelmet: Failed to load rules.json: " + e.getMessage());
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+            ArmorRules.install(rules);
+            if (invalidateScheduler != null) {
+                playerEntities.forEach(player -> {
+                    UUID uuid = player.getPlayerRef().getUuid();
+                    if (HideArmorState.getMask(uuid) != 0) {
+                        invalidateScheduler.request(uuid, InvalidateScheduler.Priority.COMMAND);
+                    }
+                });
+            }
+            return rules.size();
+        }, saveExecutor);
+    }
 
+    /**
+     * /hhadmin: la misma mascara para muchos jugadores. Corre en saveExecutor: escritura en bloque
+     * en HideArmorState, un unico commit al backend y las invalidaciones encoladas de una vez
+     * (el scheduler las envia en un lote por mundo).
+     * @return jugadores escritos
+     */
+    private CompletableFuture<Integer> applyBulk(Collection<UUID> uuids, int mask) {
+        if (saveExecutor == null) return CompletableFuture.completedFuture(0);
+        List<UUID> targets = List.copyOf(uuids);
+        return CompletableFuture.supplyAsync(() -> {
+            HideArmorState.setMasks(targets, mask, ChangeCause.ADMIN);
+            // setMasks marca todos para guardar, tambien los que ya tenian esa mascara en memoria
+            dirty.set(true);
+            saveStateToDisk();
+            if (backend != null) {
                 try {
-                    UUID uuid = UUID.fromString(entry.getKey());
-                    HideArmorState.setMaskSilently(uuid, clamped);
-                    loaded++;
-                } catch (IllegalArgumentException ignored) {
+                    backend.flush();
+                } catch (Exception e) {
+                    System.err.println("HideHelmet: Failed to flush state: " + e.getMessage());
                 }
             }
-            return loaded;
-        } catch (Exception e) {
-            System.err.println("HideHelmet: Failed to load state: " + e.getMessage());
-            return 0;
-        }
+
+            List<UUID> online = new ArrayList<>(targets.size());
+            for (UUID uuid : targets) {
+                if (HideArmorState.hasHandle(uuid)) online.add(uuid);
+                else HideArmorState.evict(uuid); // ya guardado; no se queda en memoria
+            }
+            if (invalidateScheduler != null) {
+                invalidateScheduler.requestAll(online, InvalidateScheduler.Priority.COMMAND);
+            }
+            this.getLogger().at(Level.INFO).log("HideHelmet: applied " + HideArmorState.formatMask(mask)
+                    + " to " + targets.size() + " players (" + online.size() + " online).");
+            return targets.size();
+        }, saveExecutor);
     }
 
-    private int saveStateToDisk() {
-        if (dataFile == null) return 0;
+    private void markDirtyAndScheduleSave() {
+        dirty.set(true);
+        if (saveExecutor == null) return;
 
         synchronized (saveLock) {
-            if (!dirty) return 0;
-            dirty = false;
+            if (pendingSave == null || pendingSave.isDone()) {
+                pendingSave = saveExecutor.schedule(this::saveStateToDisk, tuning.getSaveDebounceMs(), TimeUnit.MILLISECONDS);
+            }
         }
+    }
 
-        try {
-            Map<UUID, Integer> snapshot = HideArmorState.snapshot();
-            Map<String, Integer> out = new HashMap<>();
-
-            for (Map.Entry<UUID, Integer> entry : snapshot.entrySet()) {
-                Integer mask = entry.getValue();
-                if (mask == null) continue;
-                int clamped = Math.max(0, Math.min(MAX_MASK, mask));
-                if (clamped == 0) continue;
-                out.put(entry.getKey().toString(), clamped);
-            }
+    /**
+     * Lee la config y abre el backend. Las mascaras no se cargan aqui: se leen al conectar cada jugador.
+     * @return jugadores guardados en el backend
+     */
+    private long loadStateFromDisk() {
+        if (configFile == null) return 0;
 
-            SaveModel model = new SaveModel();
-            model.players = out;
-            SaveConfig config = new SaveConfig();
-            config.invalidateCooldownMs = invalidateCooldownMs;
-            config.pickupImmediate = pickupImmediate;
-            model.config = config;
+        try {
+            config = loadOrMigrateConfig();
+        } catch (Exception e) {
+            // se arranca con los valores por defecto
+            System.err.println("HideHelmet: Failed to load config.json: " + e.getMessage());
+        }
+        applyStartupConfig(config);
+        tuning = Tuning.from(config);
 
-            String json = gson.toJson(model);
-            Files.writeString(dataFile.toPath(), json, StandardCharsets.UTF_8);
-            return out.size();
+        try {
+            backend = createBackend();
         } catch (Exception e) {
-            synchronized (saveLock) {
-                dirty = true;
+            System.err.println("HideHelmet: Failed to load state: " + e.getMessage());
+            return 0;
+        }
+
+        try {
+            long stored = backend.open();
+            if (stored == 0 && stateFile.hasPlayers()) {
+                // Migracion unica: players.json -> backend; players.json ya no tiene nada mas
+                MaskBatch batch = new MaskBatch();
+                int migrated = stateFile.readPlayers(batch::add);
+                backend.putAll(batch);
+                backend.flush();
+                stateFile.retire();
+                this.getLogger().at(Level.INFO).log("HideHelmet: migrated " + migrated + " players from players.json.");
+                return migrated;
             }
-            System.err.println("HideHelmet: Failed to save state: " + e.getMessage());
+            return stored;
+        } catch (Exception e) {
+            // un backend remoto sigue reintentando la conexion
+            System.err.println("HideHelmet: Failed to open state backend: " + e.getMessage());
             return 0;
         }
     }
 
-    private static final class SaveModel {
-        Map<String, Integer> players = new HashMap<>();
-        SaveConfig config;
+    /**
+     * config.json; la primera vez se crea con el bloque config de players.json (o los valores por defecto).
+     */
+    private PluginConfig loadOrMigrateConfig() throws IOException {
+        if (configFile.exists()) return configFile.load();
+
+        PluginConfig legacy = stateFile.loadConfig();
+        PluginConfig migrated = legacy != null ? legacy : new PluginConfig();
+        // el fichero nuevo lista todos los parametros ajustables
+        Tuning.from(migrated).writeTo(migrated);
+        configFile.write(migrated);
+        if (legacy != null) {
+            this.getLogger().at(Level.INFO).log("HideHelmet: moved config from players.json to config.json.");
+        }
+        // sin jugadores, players.json solo tenia la config
+        if (!stateFile.hasPlayers()) stateFile.retire();
+        return migrated;
     }
 
-    private static final class SaveConfig {
-        Long invalidateCooldownMs;
-        Boolean pickupImmediate;
-    }
+    private StateBackend createBackend() throws IOException {
+        if (!"remote".equalsIgnoreCase(stateBackend)) {
+            return new LocalStateBackend(getDataDirectory(), journalCompactBytes);
+        }
 
-    private void requestEquipmentInvalidate(Player player, boolean immediate) {
-        if (player == null) return;
-        if (HideArmorState.getMask(player.getPlayerRef().getUuid()) == 0) return;
+        if (embeddedStateServer) {
+            // Servidor de estado dentro de este nodo, para probar varios nodos en una sola maquina
+            stateServer = new StateServer(remotePort, getDataDirectory().resolve("state-server"), journalCompactBytes);
+            this.getLogger().at(Level.INFO).log("HideHelmet: state server listening on port " + stateServer.getPort() + ".");
+        }
+        RemoteStateBackend remote = new RemoteStateBackend(remoteHost, remotePort, remoteFlushMs, remoteFlushRecords);
+        // Cambios hechos en otro nodo para un jugador que esta aqui
+        remote.subscribe((msb, lsb, mask) -> {
+            UUID uuid = new UUID(msb, lsb);
+            if (!HideArmorState.hasHandle(uuid) || !HideArmorState.restore(uuid, mask, ChangeCause.REMOTE)) return;
+            if (invalidateScheduler != null) {
+                invalidateScheduler.request(uuid, InvalidateScheduler.Priority.COMMAND);
+            }
+        });
+        return remote;
+    }
 
-        long now = System.currentTimeMillis();
-        if (immediate) {
-            cancelPendingInvalidate(player.getPlayerRef().getUuid());
-            lastInvalidateByPlayer.put(player.getPlayerRef().getUuid(), now);
-            executeInvalidate(player);
-            return;
+    /**
+     * Claves que solo se leen al arrancar.
+     */
+    private void applyStartupConfig(PluginConfig config) {
+        if (config.stateBackend != null) {
+            stateBackend = config.stateBackend;
         }
-        Long last = lastInvalidateByPlayer.get(player.getPlayerRef().getUuid());
-        if (last == null || (now - last) >= invalidateCooldownMs) {
-            lastInvalidateByPlayer.put(player.getPlayerRef().getUuid(), now);
-            executeInvalidate(player);
-            return;
+        if (config.remoteHost != null && !config.remoteHost.isEmpty()) {
+            remoteHost = config.remoteHost;
+        }
+        if (config.remotePort != null && config.remotePort > 0 && config.remotePort < 65536) {
+            remotePort = config.remotePort;
+        }
+        if (config.remoteFlushMs != null && config.remoteFlushMs > 0) {
+            remoteFlushMs = config.remoteFlushMs;
+        }
+        if (config.remoteFlushRecords != null && config.remoteFlushRecords > 0) {
+            remoteFlushRecords = config.remoteFlushRecords;
+        }
+        if (config.journalCompactBytes != null && config.journalCompactBytes > 0) {
+            journalCompactBytes = config.journalCompactBytes;
+        }
+        if (config.embeddedStateServer != null) {
+            embeddedStateServer = config.embeddedStateServer;
+        }
+        if (config.metricsExportSeconds != null && config.metricsExportSeconds >= 0) {
+            metricsExportSeconds = config.metricsExportSeconds;
         }
-
-        long delay = invalidateCooldownMs - (now - last);
-        scheduleDeferredInvalidate(player, delay);
     }
 
-    private void scheduleDeferredInvalidate(Player player, long delayMs) {
-        if (invalidateExecutor == null) return;
-        UUID uuid = player.getPlayerRef().getUuid();
-        pendingInvalidates.compute(uuid, (key, existing) -> {
-            if (existing != null && !existing.isDone()) return existing;
-            return invalidateExecutor.schedule(() -> {
-                try {
-                    executeInvalidate(player);
-                } finally {
-                    pendingInvalidates.remove(key);
-                    lastInvalidateByPlayer.put(key, System.currentTimeMillis());
+    /**
+     * Group commit de los jugadores que cambiaron. No toma saveLock: solo serializa con otros guardados.
+     */
+    private int saveStateToDisk() {
+        if (backend == null) return 0;
+        if (!dirty.getAndSet(false)) return 0;
+
+        synchronized (commitLock) {
+            SaveEvent event = new SaveEvent();
+            event.begin();
+            MaskBatch batch = unsaved != null ? unsaved : new MaskBatch();
+            HideArmorState.drainChanges(batch::add);
+            long start = System.nanoTime();
+            try {
+                backend.putAll(batch);
+                unsaved = null;
+                Metrics.SAVES.increment();
+                Metrics.SAVED_RECORDS.add(batch.size());
+                Metrics.SAVE_TIME.recordSince(start);
+                event.success = true;
+                return batch.size();
+            } catch (Exception e) {
+                unsaved = batch;
+                dirty.set(true);
+                System.err.println("HideHelmet: Failed to save state: " + e.getMessage());
+                return 0;
+            } finally {
+                event.end();
+                if (event.shouldCommit()) {
+                    event.records = batch.size();
+                    event.backend = backend.getClass().getSimpleName();
+                    event.commit();
                 }
-            }, Math.max(0, delayMs), TimeUnit.MILLISECONDS);
-        });
+            }
+        }
     }
 
-    private void cancelPendingInvalidate(UUID uuid) {
-        ScheduledFuture<?> pending = pendingInvalidates.remove(uuid);
-        if (pending != null) {
-            pending.cancel(false);
-        }
+    private static void traceTrigger(String source, Player player, InteractionType type) {
+        if (player == null) return;
+        var uuid = player.getPlayerRef().getUuid();
+        // Sin trace ni grabacion JFR: una lectura volatile y fuera, sin buscar la mascara
+        DecisionTrace trace = Traces.get(uuid);
+        TriggerEvent event = new TriggerEvent();
+        if (trace == null && !event.isEnabled()) return;
+
+        String interaction = type == null ? null : type.name();
+        int mask = HideArmorState.getMask(uuid);
+        if (trace != null) trace.record(TraceKind.TRIGGER, source, interaction, mask);
+
+        if (!event.shouldCommit()) return;
+        event.player = uuid.toString();
+        event.source = source;
+        event.interactionType = interaction;
+        event.masked = mask != 0;
+        event.commit();
     }
 
-    private void executeInvalidate(Player player) {
-        var world = player.getWorld();
-        if (world == null) return;
-        world.execute(() -> {
-            try {
-                player.invalidateEquipmentNetwork();
-            } catch (Throwable ignored) {}
-        });
+    private void trigger(Player player, TriggerAction action) {
+        if (action == TriggerAction.IGNORE) return;
+        requestEquipmentInvalidate(player, action.priority());
+    }
+
+    private void requestEquipmentInvalidate(Player player, InvalidateScheduler.Priority priority) {
+        if (player == null || invalidateScheduler == null) return;
+        if (HideArmorState.getMask(player.getPlayerRef().getUuid()) == 0) return;
+
+        invalidateScheduler.request(player, priority);
     }
 }
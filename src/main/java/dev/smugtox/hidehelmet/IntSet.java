@@ -0,0 +1,127 @@
+package dev.smugtox.hidehelmet;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Conjunto de ints (p. ej. networkIds de jugadores), open addressing,
+ * 4 bytes de clave + 1 byte de estado por entrada, sin objetos ni boxing.
+ *
+ * Lecturas sin locks (ruta de packets), escrituras sincronizadas.
+ * Como en MaskTable, quitar una clave deja el slot ocupado (REMOVED) y se limpia al redimensionar.
+ */
+public final class IntSet {
+
+    private static final VarHandle STATES = MethodHandles.arrayElementVarHandle(byte[].class);
+
+    private static final int MIN_CAPACITY = 16;
+    private static final byte FREE = 0;
+    private static final byte PRESENT = 1;
+    private static final byte REMOVED = 2;
+
+    private volatile Table table = new Table(MIN_CAPACITY);
+    // slots ocupados (incluye REMOVED) y claves presentes; protegidos por this
+    private int used;
+    private int live;
+
+    public boolean contains(int key) {
+        Table t = table;
+        int i = hash(key) & t.mask;
+        while (true) {
+            int s = (byte) STATES.getAcquire(t.states, i);
+            if (s == FREE) return false;
+            if (t.keys[i] == key) return s == PRESENT;
+            i = (i + 1) & t.mask;
+        }
+    }
+
+    public synchronized void add(int key) {
+        Table t = table;
+        int i = hash(key) & t.mask;
+        while (true) {
+            int s = t.states[i];
+            if (s == FREE) break;
+            if (t.keys[i] == key) {
+                if (s == REMOVED) {
+                    STATES.setRelease(t.states, i, PRESENT);
+                    live++;
+                }
+                return;
+            }
+            i = (i + 1) & t.mask;
+        }
+
+        if ((used + 1) * 4 > t.states.length * 3) {
+            t = rehash(t);
+            i = hash(key) & t.mask;
+            while (t.states[i] != FREE) i = (i + 1) & t.mask;
+        }
+
+        t.keys[i] = key;
+        // publica la clave junto con el estado
+        STATES.setRelease(t.states, i, PRESENT);
+        used++;
+        live++;
+    }
+
+    public synchronized void remove(int key) {
+        Table t = table;
+        int i = hash(key) & t.mask;
+        while (true) {
+            int s = t.states[i];
+            if (s == FREE) return;
+            if (t.keys[i] == key) {
+                if (s == PRESENT) {
+                    STATES.setRelease(t.states, i, REMOVED);
+                    live--;
+                }
+                return;
+            }
+            i = (i + 1) & t.mask;
+        }
+    }
+
+    public synchronized int size() {
+        return live;
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private Table rehash(Table old) {
+        // factor de carga 0.75, como MaskTable
+        int capacity = MIN_CAPACITY;
+        while (capacity * 3 / 4 <= live) capacity <<= 1;
+
+        Table t = new Table(capacity);
+        int copied = 0;
+        for (int j = 0; j < old.states.length; j++) {
+            if (old.states[j] != PRESENT) continue;
+
+            int key = old.keys[j];
+            int i = hash(key) & t.mask;
+            while (t.states[i] != FREE) i = (i + 1) & t.mask;
+            t.keys[i] = key;
+            t.states[i] = PRESENT;
+            copied++;
+        }
+
+        used = copied;
+        table = t; // volatile: los lectores ven la tabla completa
+        return t;
+    }
+
+    private static final class Table {
+        final int[] keys;
+        final byte[] states;
+        final int mask;
+
+        Table(int capacity) {
+            keys = new int[capacity];
+            states = new byte[capacity];
+            mask = capacity - 1;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package dev.smugtox.hidehelmet;
+
+import java.util.UUID;
+
+/**
+ * Mascara de un jugador conectado, mantenida al dia por HideArmorState.
+ * Leerla es una sola lectura de campo, sin hashing (ruta de packets).
+ */
+public final class MaskHandle {
+
+    private final UUID uuid;
+    volatile int mask;
+    // Piezas que este jugador oculta en los demas jugadores; solo de sesion, no se guarda
+    volatile int othersMask;
+
+    MaskHandle(UUID uuid) {
+        this.uuid = uuid;
+    }
+
+    public UUID getUuid() {
+        return uuid;
+    }
+
+    public int getMask() {
+        return mask;
+    }
+
+    public int getOthersMask() {
+        return othersMask;
+    }
+
+    public boolean isHidden(int slot) {
+        return (mask & (1 << slot)) != 0;
+    }
+}
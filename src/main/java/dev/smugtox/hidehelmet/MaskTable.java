@@ -0,0 +1,277 @@
+package dev.smugtox.hidehelmet;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Tabla concurrente de mascaras, open addressing, indexada por los dos longs del UUID.
+ * Por entrada: 16 bytes de clave + 1 byte de valor, sin objetos por jugador.
+ *
+ * Lecturas sin locks (ruta de packets). Escrituras con un lock por segmento;
+ * cada segmento es una tabla independiente que se redimensiona sola.
+ * Las entradas no se borran: una mascara 0 deja el slot ocupado y se limpia al redimensionar.
+ * Cada valor lleva un bit "dirty" para que la persistencia solo escriba lo que cambio.
+ */
+public final class MaskTable {
+
+    private static final VarHandle VALUES = MethodHandles.arrayElementVarHandle(byte[].class);
+
+    private static final int SEGMENT_BITS = 4;
+    private static final int SEGMENT_COUNT = 1 << SEGMENT_BITS;
+    private static final int MIN_CAPACITY = 16;
+
+    private static final int OCCUPIED = 0x80;
+    private static final int DIRTY = 0x40;
+    private static final int MASK_BITS = 0x0F;
+
+    private final Segment[] segments = new Segment[SEGMENT_COUNT];
+
+    public MaskTable() {
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    public int get(long msb, long lsb) {
+        int v = find(msb, lsb);
+        return v < 0 ? 0 : v;
+    }
+
+    /**
+     * Como get, pero distingue una clave ausente (-1) de una mascara 0.
+     * Solo es fiable para entradas dirty: una mascara 0 ya persistida puede desaparecer al redimensionar.
+     */
+    public int find(long msb, long lsb) {
+        int h = hash(msb, lsb);
+        Table t = segments[h >>> (32 - SEGMENT_BITS)].table;
+        int i = h & t.mask;
+        while (true) {
+            int v = (byte) VALUES.getAcquire(t.values, i);
+            if (v == 0) return -1;
+            if (t.keys[i << 1] == msb && t.keys[(i << 1) + 1] == lsb) return v & MASK_BITS;
+            i = (i + 1) & t.mask;
+        }
+    }
+
+    /**
+     * @param markDirty false para valores que ya estan persistidos (carga desde disco); con true se
+     *                  marca para guardar aunque la mascara no cambie (la entrada puede estar desalojada)
+     * @return la mascara anterior
+     */
+    public int put(long msb, long lsb, int mask, boolean markDirty) {
+        int h = hash(msb, lsb);
+        return segments[h >>> (32 - SEGMENT_BITS)].put(h, msb, lsb, mask & MASK_BITS, markDirty ? DIRTY : 0);
+    }
+
+    /**
+     * Entrega las entradas marcadas como dirty (incluidas las que pasaron a 0) y limpia la marca.
+     * El visitor se llama con el lock del segmento: no debe hacer I/O ni escribir en la tabla.
+     * @return entradas entregadas
+     */
+    public int drainDirty(HideArmorState.MaskVisitor visitor) {
+        int drained = 0;
+        for (Segment segment : segments) {
+            drained += segment.drainDirty(visitor);
+        }
+        return drained;
+    }
+
+    /**
+     * Recorre las entradas con mascara != 0 sin copiar la tabla.
+     * Las escrituras concurrentes pueden o no verse.
+     */
+    public void forEach(HideArmorState.MaskVisitor visitor) {
+        for (Segment segment : segments) {
+            Table t = segment.table;
+            byte[] values = t.values;
+            long[] keys = t.keys;
+            for (int i = 0; i < values.length; i++) {
+                int v = (byte) VALUES.getAcquire(values, i);
+                int mask = v & MASK_BITS;
+                if (mask == 0) continue;
+                visitor.accept(keys[i << 1], keys[(i << 1) + 1], mask);
+            }
+        }
+    }
+
+    /**
+     * Como put sin marcar dirty, pero no pisa una entrada con cambios sin guardar (que es mas nueva).
+     * @return false si la entrada estaba dirty
+     */
+    public boolean putIfClean(long msb, long lsb, int mask) {
+        int h = hash(msb, lsb);
+        return segments[h >>> (32 - SEGMENT_BITS)].putIfClean(h, msb, lsb, mask & MASK_BITS);
+    }
+
+    /**
+     * Quita la mascara de memoria si ya esta persistida (no dirty). El slot se libera al redimensionar.
+     * @return false si la entrada tiene cambios sin guardar
+     */
+    public boolean evict(long msb, long lsb) {
+        int h = hash(msb, lsb);
+        return segments[h >>> (32 - SEGMENT_BITS)].evict(h, msb, lsb);
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.live;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Slots reservados en total (para tests de ocupacion).
+     */
+    int capacity() {
+        int capacity = 0;
+        for (Segment segment : segments) {
+            capacity += segment.table.values.length;
+        }
+        return capacity;
+    }
+
+    private static int hash(long msb, long lsb) {
+        long h = msb ^ Long.rotateLeft(lsb, 32);
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    private static final class Table {
+        final long[] keys;
+        final byte[] values;
+        final int mask;
+
+        Table(int capacity) {
+            keys = new long[capacity << 1];
+            values = new byte[capacity];
+            mask = capacity - 1;
+        }
+    }
+
+    private static final class Segment {
+        volatile Table table = new Table(MIN_CAPACITY);
+        // slots ocupados (incluye mascaras a 0) y entradas con mascara != 0; protegidos por this
+        int used;
+        int live;
+
+        synchronized int put(int h, long msb, long lsb, int mask, int dirty) {
+            Table t = table;
+            int i = h & t.mask;
+            while (true) {
+                int v = t.values[i];
+                if (v == 0) break;
+                if (t.keys[i << 1] == msb && t.keys[(i << 1) + 1] == lsb) {
+                    int old = v & MASK_BITS;
+                    if (old == mask) {
+                        // sin cambio en memoria, pero lo que haya en disco puede ser otro valor
+                        if (dirty != 0 && (v & DIRTY) == 0) VALUES.setRelease(t.values, i, (byte) (v | dirty));
+                        return old;
+                    }
+                    VALUES.setRelease(t.values, i, (byte) (OCCUPIED | (v & DIRTY) | dirty | mask));
+                    if (old == 0) live++;
+                    else if (mask == 0) live--;
+                    return old;
+                }
+                i = (i + 1) & t.mask;
+            }
+
+            // una mascara 0 nueva solo se guarda si hay que persistirla (borra lo que haya en disco)
+            if (mask == 0 && dirty == 0) return 0;
+
+            if ((used + 1) * 4 > t.values.length * 3) {
+                t = rehash(t);
+                i = h & t.mask;
+                while (t.values[i] != 0) i = (i + 1) & t.mask;
+            }
+
+            t.keys[i << 1] = msb;
+            t.keys[(i << 1) + 1] = lsb;
+            // publica la clave junto con el valor
+            VALUES.setRelease(t.values, i, (byte) (OCCUPIED | dirty | mask));
+            used++;
+            if (mask != 0) live++;
+            return 0;
+        }
+
+        synchronized boolean putIfClean(int h, long msb, long lsb, int mask) {
+            Table t = table;
+            int i = h & t.mask;
+            while (true) {
+                int v = t.values[i];
+                if (v == 0) break;
+                if (t.keys[i << 1] == msb && t.keys[(i << 1) + 1] == lsb) {
+                    if ((v & DIRTY) != 0) return false;
+                    break;
+                }
+                i = (i + 1) & t.mask;
+            }
+            put(h, msb, lsb, mask, 0);
+            return true;
+        }
+
+        synchronized boolean evict(int h, long msb, long lsb) {
+            Table t = table;
+            int i = h & t.mask;
+            while (true) {
+                int v = t.values[i];
+                if (v == 0) return true;
+                if (t.keys[i << 1] == msb && t.keys[(i << 1) + 1] == lsb) {
+                    if ((v & DIRTY) != 0) return false;
+                    if ((v & MASK_BITS) != 0) live--;
+                    VALUES.setRelease(t.values, i, (byte) OCCUPIED);
+                    return true;
+                }
+                i = (i + 1) & t.mask;
+            }
+        }
+
+        synchronized int drainDirty(HideArmorState.MaskVisitor visitor) {
+            Table t = table;
+            int drained = 0;
+            for (int i = 0; i < t.values.length; i++) {
+                int v = t.values[i];
+                if ((v & DIRTY) == 0) continue;
+                visitor.accept(t.keys[i << 1], t.keys[(i << 1) + 1], v & MASK_BITS);
+                VALUES.setRelease(t.values, i, (byte) (v & ~DIRTY));
+                drained++;
+            }
+            return drained;
+        }
+
+        private Table rehash(Table old) {
+            int keep = 0;
+            for (int j = 0; j < old.values.length; j++) {
+                if ((old.values[j] & (MASK_BITS | DIRTY)) != 0) keep++;
+            }
+            // factor de carga 0.75: tras crecer queda entre 37% y 75% ocupada (~17 B por jugador)
+            int capacity = MIN_CAPACITY;
+            while (capacity * 3 / 4 <= keep) capacity <<= 1;
+
+            Table t = new Table(capacity);
+            int copied = 0;
+            for (int j = 0; j < old.values.length; j++) {
+                int v = old.values[j];
+                // una mascara 0 pendiente de persistir se conserva hasta el siguiente drain
+                if ((v & (MASK_BITS | DIRTY)) == 0) continue;
+
+                long msb = old.keys[j << 1];
+                long lsb = old.keys[(j << 1) + 1];
+                int i = hash(msb, lsb) & t.mask;
+                while (t.values[i] != 0) i = (i + 1) & t.mask;
+                t.keys[i << 1] = msb;
+                t.keys[(i << 1) + 1] = lsb;
+                t.values[i] = (byte) v;
+                copied++;
+            }
+
+            used = copied;
+            table = t; // volatile: los lectores ven la tabla completa
+            return t;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package dev.smugtox.hidehelmet.change;
+
+/**
+ * Origen de un cambio de mascara.
+ */
+public enum ChangeCause {
+    /** El jugador uso /hidehelmet o /hidearmor. */
+    COMMAND(true),
+    /** Otro plugin o codigo llamando a HideArmorState.setMask. */
+    API(true),
+    /** Operacion masiva de un admin (/hhadmin). */
+    ADMIN(true),
+    /** Mascara leida del backend al conectar. Ya esta guardada. */
+    LOAD(false),
+    /** Cambio hecho en otro nodo y recibido del backend. Ya esta guardado. */
+    REMOTE(false);
+
+    private final boolean persistent;
+
+    ChangeCause(boolean persistent) {
+        this.persistent = persistent;
+    }
+
+    /**
+     * @return true si el cambio hay que guardarlo (no viene ya del backend)
+     */
+    public boolean isPersistent() {
+        return persistent;
+    }
+}
@@ -0,0 +1,93 @@
+package dev.smugtox.hidehelmet.change;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Publica cambios de mascara a cualquier numero de suscriptores.
+ *
+ * Los productores encolan sin locks en una cola MPSC intrusiva (un getAndSet por cambio).
+ * El primero que gana el contador de trabajo vacia la cola y entrega a los suscriptores;
+ * los demas solo encolan y se van. Asi los cambios llegan en el orden en que se encolaron,
+ * de uno en uno, sin que los productores se esperen entre si.
+ */
+public final class ChangeFeed {
+
+    private final List<ChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    // Cola: tail es de los productores, head (nodo centinela) solo lo toca quien vacia
+    private final AtomicReference<MaskChange> tail;
+    private MaskChange head;
+    private final AtomicInteger wip = new AtomicInteger();
+
+    public ChangeFeed() {
+        MaskChange stub = new MaskChange(null, 0, 0, null);
+        head = stub;
+        tail = new AtomicReference<>(stub);
+    }
+
+    public void subscribe(ChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void unsubscribe(ChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Sin suscriptores no hace falta ni crear el evento.
+     */
+    public boolean hasSubscribers() {
+        return !listeners.isEmpty();
+    }
+
+    /**
+     * Encola sin entregar. Barato: se puede llamar con un lock tomado para fijar el orden.
+     */
+    public void offer(MaskChange change) {
+        MaskChange prev = tail.getAndSet(change);
+        prev.next = change;
+    }
+
+    /**
+     * Entrega lo encolado, salvo que otro hilo ya este en ello (entonces lo entregara el).
+     */
+    public void drain() {
+        if (wip.getAndIncrement() != 0) return;
+
+        int missed = 1;
+        do {
+            MaskChange change;
+            while ((change = poll()) != null) {
+                deliver(change);
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    public void publish(MaskChange change) {
+        offer(change);
+        drain();
+    }
+
+    // Solo quien tiene wip
+    private MaskChange poll() {
+        MaskChange next = head.next;
+        if (next == null) return null;
+        head.next = null; // ayuda al GC
+        head = next;      // el entregado pasa a ser el centinela
+        return next;
+    }
+
+    private void deliver(MaskChange change) {
+        for (ChangeListener listener : listeners) {
+            try {
+                listener.onChange(change);
+            } catch (RuntimeException e) {
+                System.err.println("HideHelmet: Change listener failed: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package dev.smugtox.hidehelmet.change;
+
+/**
+ * Suscriptor del feed de cambios. Se llama en el hilo que hizo el cambio (o en el de otro productor
+ * que esta vaciando la cola), asi que debe ser rapido y no bloquear.
+ */
+@FunctionalInterface
+public interface ChangeListener {
+    void onChange(MaskChange change);
+}
@@ -0,0 +1,52 @@
+package dev.smugtox.hidehelmet.change;
+
+import java.util.UUID;
+
+/**
+ * Un cambio de mascara de un jugador. Solo se publica si la mascara cambio de verdad.
+ */
+public final class MaskChange {
+
+    private final UUID uuid;
+    private final int oldMask;
+    private final int newMask;
+    private final ChangeCause cause;
+
+    // enlace de la cola de ChangeFeed
+    volatile MaskChange next;
+
+    public MaskChange(UUID uuid, int oldMask, int newMask, ChangeCause cause) {
+        this.uuid = uuid;
+        this.oldMask = oldMask;
+        this.newMask = newMask;
+        this.cause = cause;
+    }
+
+    public UUID getUuid() {
+        return uuid;
+    }
+
+    public int getOldMask() {
+        return oldMask;
+    }
+
+    public int getNewMask() {
+        return newMask;
+    }
+
+    public ChangeCause getCause() {
+        return cause;
+    }
+
+    /**
+     * Slots que cambiaron (bits de old ^ new).
+     */
+    public int getChangedSlots() {
+        return oldMask ^ newMask;
+    }
+
+    @Override
+    public String toString() {
+        return uuid + " " + oldMask + " -> " + newMask + " (" + cause + ")";
+    }
+}
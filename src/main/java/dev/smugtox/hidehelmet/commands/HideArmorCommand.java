@@ -5,14 +5,28 @@ import com.hypixel.hytale.server.core.command.system.CommandContext;
 import com.hypixel.hytale.server.core.command.system.basecommands.CommandBase;
 import com.hypixel.hytale.server.core.entity.entities.Player;
 import dev.smugtox.hidehelmet.HideArmorState;
+import dev.smugtox.hidehelmet.change.ChangeCause;
+import dev.smugtox.hidehelmet.invalidate.InvalidateScheduler;
+import dev.smugtox.hidehelmet.net.PlayerEntityIndex;
 
 import javax.annotation.Nonnull;
 import java.util.Arrays;
+import java.util.UUID;
+import java.util.function.Predicate;
 
 public class HideArmorCommand extends CommandBase {
 
-    public HideArmorCommand(String name, String description) {
+    private final InvalidateScheduler invalidateScheduler;
+    private final PlayerEntityIndex playerEntities;
+    // true mientras la mascara guardada del jugador no se ha leido: un toggle pisaria la del backend
+    private final Predicate<UUID> loading;
+
+    public HideArmorCommand(String name, String description, InvalidateScheduler invalidateScheduler,
+                            PlayerEntityIndex playerEntities, Predicate<UUID> loading) {
         super(name, description);
+        this.invalidateScheduler = invalidateScheduler;
+        this.playerEntities = playerEntities;
+        this.loading = loading;
         setAllowsExtraArguments(true);
     }
 
@@ -34,9 +48,19 @@ public class HideArmorCommand extends CommandBase {
             return;
         }
 
+        if ("others".equals(first)) {
+            others(player, args.length > 1 ? args[1].toLowerCase() : "");
+            return;
+        }
+
+        if (loading.test(player.getPlayerRef().getUuid())) {
+            player.sendMessage(Message.raw("HideArmor: your saved settings are still loading, try again in a moment."));
+            return;
+        }
+
         if ("all".equals(first)) {
             int current = HideArmorState.getMask(player.getPlayerRef().getUuid());
-            int newMask = HideArmorState.setAll(player.getPlayerRef().getUuid(), current != 15);
+            int newMask = HideArmorState.setAll(player.getPlayerRef().getUuid(), current != 15, ChangeCause.COMMAND);
             player.sendMessage(Message.raw("HideArmor: " + HideArmorState.formatMask(newMask)));
             forceRefresh(player);
             return;
@@ -51,7 +75,7 @@ public class HideArmorCommand extends CommandBase {
             boolean enable = "on".equals(first);
             String target = args[1].toLowerCase();
             if ("all".equals(target)) {
-                int newMask = HideArmorState.setAll(player.getPlayerRef().getUuid(), enable);
+                int newMask = HideArmorState.setAll(player.getPlayerRef().getUuid(), enable, ChangeCause.COMMAND);
                 player.sendMessage(Message.raw("HideArmor: " + HideArmorState.formatMask(newMask)));
                 forceRefresh(player);
                 return;
@@ -66,7 +90,7 @@ public class HideArmorCommand extends CommandBase {
             int mask = HideArmorState.getMask(player.getPlayerRef().getUuid());
             int bit = 1 << slot;
             int newMask = enable ? (mask | bit) : (mask & ~bit);
-            HideArmorState.setMask(player.getPlayerRef().getUuid(), newMask);
+            HideArmorState.setMask(player.getPlayerRef().getUuid(), newMask, ChangeCause.COMMAND);
             player.sendMessage(Message.raw("HideArmor: " + HideArmorState.formatMask(newMask)));
             forceRefresh(player);
             return;
@@ -74,7 +98,7 @@ public class HideArmorCommand extends CommandBase {
 
         int slot = resolveSlot(first);
         if (slot >= 0) {
-            int newMask = HideArmorState.toggleSlot(player.getPlayerRef().getUuid(), slot);
+            int newMask = HideArmorState.toggleSlot(player.getPlayerRef().getUuid(), slot, ChangeCause.COMMAND);
             player.sendMessage(Message.raw("HideArmor: " + HideArmorState.formatMask(newMask)));
             forceRefresh(player);
             return;
@@ -83,13 +107,45 @@ public class HideArmorCommand extends CommandBase {
         sendHelp(player);
     }
 
+    /**
+     * Modo viewer: oculta piezas de los demas jugadores solo en la vista de este jugador. No se guarda.
+     */
+    private void others(Player player, String target) {
+        var uuid = player.getPlayerRef().getUuid();
+        int current = HideArmorState.getOthersMask(uuid);
+        int newMask;
+        if ("all".equals(target)) {
+            newMask = current == 15 ? 0 : 15;
+        } else if ("off".equals(target)) {
+            newMask = 0;
+        } else if ("status".equals(target)) {
+            player.sendMessage(Message.raw("HideArmor others: " + HideArmorState.formatMask(current)));
+            return;
+        } else {
+            int slot = resolveSlot(target);
+            if (slot < 0) {
+                player.sendMessage(Message.raw("Usage: /hidearmor others <head|chest|hands|legs|all|off|status>"));
+                return;
+            }
+            newMask = current ^ (1 << slot);
+        }
+
+        if (!HideArmorState.setOthersMask(uuid, newMask)) return;
+        player.sendMessage(Message.raw("HideArmor others: " + HideArmorState.formatMask(newMask)));
+        if (newMask != current) refreshOthers(player);
+    }
+
     private void sendHelp(Player player) {
-        player.sendMessage(Message.raw("Usage: /hidearmor [status|all|on|off] [head|chest|hands|legs]"));
+        player.sendMessage(Message.raw("Usage: /hidearmor [status|all|on|off|others] [head|chest|hands|legs]"));
     }
 
     private void sendStatus(Player player) {
-        int mask = HideArmorState.getMask(player.getPlayerRef().getUuid());
-        player.sendMessage(Message.raw("Hidden: " + HideArmorState.formatMask(mask)));
+        var uuid = player.getPlayerRef().getUuid();
+        player.sendMessage(Message.raw("Hidden: " + HideArmorState.formatMask(HideArmorState.getMask(uuid))));
+        int others = HideArmorState.getOthersMask(uuid);
+        if (others != 0) {
+            player.sendMessage(Message.raw("Hidden on others: " + HideArmorState.formatMask(others)));
+        }
     }
 
     private int resolveSlot(String arg) {
@@ -122,15 +178,22 @@ public class HideArmorCommand extends CommandBase {
         return parts;
     }
 
-    private void forceRefresh(Player player) {
+    /**
+     * Reenvia el Equipment de los demas jugadores del mundo para aplicar (o quitar) el modo others.
+     * invalidateEquipmentNetwork lo reenvia a todos sus viewers: solo se hace al cambiar el modo.
+     */
+    private void refreshOthers(Player player) {
         var world = player.getWorld();
         if (world == null) return;
-
-        world.execute(() -> {
+        world.execute(() -> playerEntities.forEachInWorld(world, other -> {
+            if (other == player) return;
             try {
-                player.invalidateEquipmentNetwork();
-            } catch (Throwable ignored) {
-            }
-        });
+                other.invalidateEquipmentNetwork();
+            } catch (Throwable ignored) {}
+        }));
+    }
+
+    private void forceRefresh(Player player) {
+        invalidateScheduler.request(player, InvalidateScheduler.Priority.COMMAND);
     }
 }
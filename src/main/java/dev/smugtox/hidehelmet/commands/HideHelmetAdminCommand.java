@@ -0,0 +1,158 @@
+package dev.smugtox.hidehelmet.commands;
+
+import com.hypixel.hytale.server.core.Message;
+import com.hypixel.hytale.server.core.command.system.CommandContext;
+import com.hypixel.hytale.server.core.command.system.basecommands.CommandBase;
+import com.hypixel.hytale.server.core.entity.entities.Player;
+import dev.smugtox.hidehelmet.HideArmorState;
+import dev.smugtox.hidehelmet.net.PlayerEntityIndex;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiFunction;
+
+/**
+ * /hhadmin: la misma mascara para muchos jugadores de una vez (todos los conectados, un mundo o una lista de UUIDs).
+ * Aqui solo se resuelven los jugadores; la escritura, el guardado y las invalidaciones van en bloque (ver applyBulk).
+ */
+public class HideHelmetAdminCommand extends CommandBase {
+
+    // escribe y guarda la mascara de otros jugadores: solo para quien tenga el permiso (operadores)
+    public static final String PERMISSION = "hidehelmet.admin";
+
+    private final PlayerEntityIndex playerEntities;
+    private final BiFunction<Collection<UUID>, Integer, CompletableFuture<Integer>> applyBulk;
+
+    public HideHelmetAdminCommand(String name, String description, PlayerEntityIndex playerEntities,
+                                  BiFunction<Collection<UUID>, Integer, CompletableFuture<Integer>> applyBulk) {
+        super(name, description);
+        this.playerEntities = playerEntities;
+        this.applyBulk = applyBulk;
+        setAllowsExtraArguments(true);
+    }
+
+    @Override
+    protected void executeSync(@Nonnull CommandContext context) {
+        var sender = context.sender();
+        if (!(sender instanceof Player player)) return;
+        if (!player.hasPermission(PERMISSION)) {
+            player.sendMessage(Message.raw("HideHelmet: you need the " + PERMISSION + " permission to use /hhadmin"));
+            return;
+        }
+
+        String[] args = parseArgs(context, "hhadmin");
+        int mask = args.length >= 2 ? parseMask(args[0].toLowerCase()) : -1;
+        Set<UUID> targets = mask < 0 ? null : resolveTargets(player, Arrays.copyOfRange(args, 1, args.length));
+        if (targets == null) {
+            sendHelp(player);
+            return;
+        }
+        if (targets.isEmpty()) {
+            player.sendMessage(Message.raw("HideHelmet: no matching players"));
+            return;
+        }
+
+        var world = player.getWorld();
+        applyBulk.apply(targets, mask).whenComplete((count, error) -> {
+            Message message = error != null
+                    ? Message.raw("HideHelmet: Failed to apply: " + error.getMessage())
+                    : Message.raw("HideHelmet: " + HideArmorState.formatMask(mask) + " applied to " + count + " players");
+            if (world != null) world.execute(() -> player.sendMessage(message));
+        });
+    }
+
+    /**
+     * @return jugadores elegidos, o null si los argumentos no son validos
+     */
+    private Set<UUID> resolveTargets(Player player, String[] args) {
+        Set<UUID> targets = new LinkedHashSet<>();
+        switch (args[0].toLowerCase()) {
+            case "online" -> {
+                if (args.length != 1) return null;
+                playerEntities.forEach(p -> targets.add(p.getPlayerRef().getUuid()));
+            }
+            case "world" -> {
+                if (args.length > 2) return null;
+                String worldName;
+                if (args.length == 2) {
+                    worldName = args[1];
+                } else if (player.getWorld() != null) {
+                    worldName = player.getWorld().getName();
+                } else {
+                    return null;
+                }
+                playerEntities.forEachInWorld(worldName, p -> targets.add(p.getPlayerRef().getUuid()));
+            }
+            case "players" -> {
+                if (args.length < 2) return null;
+                for (int i = 1; i < args.length; i++) {
+                    try {
+                        targets.add(UUID.fromString(args[i]));
+                    } catch (IllegalArgumentException e) {
+                        player.sendMessage(Message.raw("HideHelmet: invalid UUID " + args[i]));
+                        return null;
+                    }
+                }
+            }
+            default -> {
+                return null;
+            }
+        }
+        return targets;
+    }
+
+    /**
+     * "all", "none" o piezas separadas por comas ("head,legs").
+     * @return mascara, o -1 si no es valida
+     */
+    private int parseMask(String arg) {
+        if ("all".equals(arg)) return 15;
+        if ("none".equals(arg)) return 0;
+
+        int mask = 0;
+        for (String name : arg.split(",")) {
+            int slot = switch (name) {
+                case "head" -> HideArmorState.SLOT_HEAD;
+                case "chest" -> HideArmorState.SLOT_CHEST;
+                case "hands" -> HideArmorState.SLOT_HANDS;
+                case "legs" -> HideArmorState.SLOT_LEGS;
+                default -> -1;
+            };
+            if (slot < 0) return -1;
+            mask |= 1 << slot;
+        }
+        return mask;
+    }
+
+    private void sendHelp(Player player) {
+        player.sendMessage(Message.raw("Usage: /hhadmin <all|none|head,chest,...> <target>"));
+        player.sendMessage(Message.raw("  online              every player on this server"));
+        player.sendMessage(Message.raw("  world [name]        players in a world (default: yours)"));
+        player.sendMessage(Message.raw("  players <uuid>...   listed players, online or not"));
+    }
+
+    private String[] parseArgs(CommandContext context, String commandName) {
+        String input = context.getInputString();
+        if (input == null) return new String[0];
+
+        String trimmed = input.trim();
+        if (trimmed.isEmpty()) return new String[0];
+
+        String[] parts = trimmed.split("\\s+");
+        if (parts.length == 0) return new String[0];
+
+        String first = parts[0];
+        if (first.startsWith("/")) first = first.substring(1);
+
+        if (first.equalsIgnoreCase(commandName)) {
+            return parts.length > 1 ? Arrays.copyOfRange(parts, 1, parts.length) : new String[0];
+        }
+
+        return parts;
+    }
+}
@@ -5,13 +5,24 @@ import com.hypixel.hytale.server.core.command.system.CommandContext;
 import com.hypixel.hytale.server.core.command.system.basecommands.CommandBase;
 import com.hypixel.hytale.server.core.entity.entities.Player;
 import dev.smugtox.hidehelmet.HideArmorState;
+import dev.smugtox.hidehelmet.change.ChangeCause;
+import dev.smugtox.hidehelmet.invalidate.InvalidateScheduler;
 
 import javax.annotation.Nonnull;
+import java.util.UUID;
+import java.util.function.Predicate;
 
 public class HideHelmetCommand extends CommandBase {
 
-    public HideHelmetCommand(String name, String description) {
+    private final InvalidateScheduler invalidateScheduler;
+    // true mientras la mascara guardada del jugador no se ha leido: un toggle pisaria la del backend
+    private final Predicate<UUID> loading;
+
+    public HideHelmetCommand(String name, String description, InvalidateScheduler invalidateScheduler,
+                             Predicate<UUID> loading) {
         super(name, description);
+        this.invalidateScheduler = invalidateScheduler;
+        this.loading = loading;
     }
 
     @Override
@@ -22,7 +33,12 @@ public class HideHelmetCommand extends CommandBase {
             return;
         }
 
-        HideArmorState.toggleSlot(player.getPlayerRef().getUuid(), HideArmorState.SLOT_HEAD);
+        if (loading.test(player.getPlayerRef().getUuid())) {
+            player.sendMessage(Message.raw("HideHelmet: your saved settings are still loading, try again in a moment."));
+            return;
+        }
+
+        HideArmorState.toggleSlot(player.getPlayerRef().getUuid(), HideArmorState.SLOT_HEAD, ChangeCause.COMMAND);
         boolean enabled = HideArmorState.isHidden(player.getPlayerRef().getUuid(), HideArmorState.SLOT_HEAD);
         player.sendMessage(Message.raw(enabled ? "HideHelmet: ON" : "HideHelmet: OFF"));
 
@@ -30,14 +46,6 @@ public class HideHelmetCommand extends CommandBase {
     }
 
     private void forceRefresh(Player player) {
-        var world = player.getWorld();
-        if (world == null) return;
-
-        world.execute(() -> {
-            try {
-                player.invalidateEquipmentNetwork();
-            } catch (Throwable ignored) {
-            }
-        });
+        invalidateScheduler.request(player, InvalidateScheduler.Priority.COMMAND);
     }
 }
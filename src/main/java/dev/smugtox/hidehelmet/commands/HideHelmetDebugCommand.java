@@ -5,14 +5,24 @@ import com.hypixel.hytale.server.core.command.system.CommandContext;
 import com.hypixel.hytale.server.core.command.system.basecommands.CommandBase;
 import com.hypixel.hytale.server.core.entity.entities.Player;
 import com.hypixel.hytale.server.core.inventory.container.ItemContainer;
+import dev.smugtox.hidehelmet.trace.DecisionTrace;
+import dev.smugtox.hidehelmet.trace.Traces;
 
 import javax.annotation.Nonnull;
 import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
 public class HideHelmetDebugCommand extends CommandBase {
 
-    public HideHelmetDebugCommand(String name, String description) {
+    private final Supplier<CompletableFuture<String>> reload;
+
+    public HideHelmetDebugCommand(String name, String description, Supplier<CompletableFuture<String>> reload) {
         super(name, description);
+        this.reload = reload;
+        setAllowsExtraArguments(true);
     }
 
     @Override
@@ -20,6 +30,16 @@ public class HideHelmetDebugCommand extends CommandBase {
         var sender = context.sender();
         if (!(sender instanceof Player player)) return;
 
+        String[] args = parseArgs(context, "hhdebug");
+        if (args.length > 0 && "trace".equalsIgnoreCase(args[0])) {
+            trace(player, args.length > 1 ? args[1].toLowerCase() : "");
+            return;
+        }
+        if (args.length > 0 && "reload".equalsIgnoreCase(args[0])) {
+            reload(player);
+            return;
+        }
+
         ItemContainer armor = player.getInventory().getArmor();
 
         // Imprime capacidad y luego cada slot con itemId
@@ -38,4 +58,76 @@ public class HideHelmetDebugCommand extends CommandBase {
             player.sendMessage(Message.raw("Armor[" + i + "]: " + ids[i]));
         }
     }
+
+    private void trace(Player player, String action) {
+        UUID uuid = player.getPlayerRef().getUuid();
+        switch (action) {
+            case "on" -> {
+                Traces.enable(uuid);
+                player.sendMessage(Message.raw("HideHelmet trace: ON (last " + Traces.CAPACITY + " decisions)"));
+            }
+            case "off" -> {
+                Traces.disable(uuid);
+                player.sendMessage(Message.raw("HideHelmet trace: OFF"));
+            }
+            case "dump" -> dump(player, Traces.get(uuid));
+            default -> player.sendMessage(Message.raw("Usage: /hhdebug trace <on|off|dump>"));
+        }
+    }
+
+    /**
+     * Recompila la tabla de triggers y rules.json fuera del hilo del mundo y responde cuando estan activas.
+     */
+    private void reload(Player player) {
+        var world = player.getWorld();
+        reload.get().whenComplete((summary, error) -> {
+            Message message = error != null
+                    ? Message.raw("HideHelmet: Failed to reload: " + error.getMessage())
+                    : Message.raw("HideHelmet: " + summary);
+            if (world != null) world.execute(() -> player.sendMessage(message));
+        });
+    }
+
+    private void dump(Player player, DecisionTrace trace) {
+        if (trace == null) {
+            player.sendMessage(Message.raw("HideHelmet trace is off. Use /hhdebug trace on"));
+            return;
+        }
+
+        List<DecisionTrace.Entry> entries = trace.snapshot();
+        player.sendMessage(Message.raw("HideHelmet trace: " + entries.size() + " entries (t in ns, +delta from previous)"));
+        long previous = entries.isEmpty() ? 0 : entries.get(0).nanos;
+        for (DecisionTrace.Entry e : entries) {
+            StringBuilder line = new StringBuilder(96)
+                    .append('#').append(e.seq)
+                    .append(" t=").append(e.nanos)
+                    .append(" +").append(e.nanos - previous)
+                    .append(' ').append(e.kind);
+            if (e.label != null) line.append(' ').append(e.label);
+            if (e.detail != null) line.append(' ').append(e.detail);
+            line.append(" v=").append(e.value);
+            player.sendMessage(Message.raw(line.toString()));
+            previous = e.nanos;
+        }
+    }
+
+    private String[] parseArgs(CommandContext context, String commandName) {
+        String input = context.getInputString();
+        if (input == null) return new String[0];
+
+        String trimmed = input.trim();
+        if (trimmed.isEmpty()) return new String[0];
+
+        String[] parts = trimmed.split("\\s+");
+        if (parts.length == 0) return new String[0];
+
+        String first = parts[0];
+        if (first.startsWith("/")) first = first.substring(1);
+
+        if (first.equalsIgnoreCase(commandName)) {
+            return parts.length > 1 ? Arrays.copyOfRange(parts, 1, parts.length) : new String[0];
+        }
+
+        return parts;
+    }
 }
@@ -0,0 +1,28 @@
+package dev.smugtox.hidehelmet.commands;
+
+import com.hypixel.hytale.server.core.Message;
+import com.hypixel.hytale.server.core.command.system.CommandContext;
+import com.hypixel.hytale.server.core.command.system.basecommands.CommandBase;
+import com.hypixel.hytale.server.core.entity.entities.Player;
+import dev.smugtox.hidehelmet.metrics.Metrics;
+
+import javax.annotation.Nonnull;
+
+public class HideHelmetStatsCommand extends CommandBase {
+
+    public HideHelmetStatsCommand(String name, String description) {
+        super(name, description);
+    }
+
+    @Override
+    protected void executeSync(@Nonnull CommandContext context) {
+        var sender = context.sender();
+        if (!(sender instanceof Player player)) return;
+
+        // Contadores desde el arranque; latencias como cota superior del cubo log2
+        player.sendMessage(Message.raw("HideHelmet stats:"));
+        for (String line : Metrics.describe()) {
+            player.sendMessage(Message.raw("  " + line));
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package dev.smugtox.hidehelmet.commands;
+
+import com.hypixel.hytale.server.core.Message;
+import com.hypixel.hytale.server.core.command.system.CommandContext;
+import com.hypixel.hytale.server.core.command.system.basecommands.CommandBase;
+import com.hypixel.hytale.server.core.entity.entities.Player;
+import dev.smugtox.hidehelmet.config.Tuning;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * /hhtune: ver y cambiar en caliente los parametros del scheduler y del guardado.
+ * Varios pares clave valor en un mismo comando se aplican juntos, o ninguno si alguno no es valido.
+ */
+public class HideHelmetTuneCommand extends CommandBase {
+
+    // cambia el comportamiento de todo el servidor y reescribe config.json; ver la tuning no lo necesita
+    public static final String PERMISSION = "hidehelmet.tune";
+
+    private final Supplier<Tuning> current;
+    private final Function<Map<String, String>, Tuning> tune;
+
+    public HideHelmetTuneCommand(String name, String description,
+                                 Supplier<Tuning> current, Function<Map<String, String>, Tuning> tune) {
+        super(name, description);
+        this.current = current;
+        this.tune = tune;
+        setAllowsExtraArguments(true);
+    }
+
+    @Override
+    protected void executeSync(@Nonnull CommandContext context) {
+        var sender = context.sender();
+        if (!(sender instanceof Player player)) return;
+
+        String[] args = parseArgs(context, "hhtune");
+        if (args.length == 0) {
+            send(player, "HideHelmet tuning:", current.get());
+            return;
+        }
+        if (!player.hasPermission(PERMISSION)) {
+            player.sendMessage(Message.raw("HideHelmet: you need the " + PERMISSION + " permission to change tuning"));
+            return;
+        }
+        if (args.length % 2 != 0) {
+            player.sendMessage(Message.raw("Usage: /hhtune [<key> <value>]..."));
+            player.sendMessage(Message.raw("Keys: " + String.join(", ", Tuning.KEYS)));
+            return;
+        }
+
+        Map<String, String> changes = new LinkedHashMap<>();
+        for (int i = 0; i < args.length; i += 2) {
+            changes.put(args[i], args[i + 1]);
+        }
+        try {
+            send(player, "HideHelmet tuning applied:", tune.apply(changes));
+        } catch (IllegalArgumentException e) {
+            player.sendMessage(Message.raw("HideHelmet: nothing changed, " + e.getMessage()));
+        }
+    }
+
+    private static void send(Player player, String title, Tuning tuning) {
+        player.sendMessage(Message.raw(title));
+        for (String line : tuning.describe()) {
+            player.sendMessage(Message.raw("  " + line));
+        }
+    }
+
+    private String[] parseArgs(CommandContext context, String commandName) {
+        String input = context.getInputString();
+        if (input == null) return new String[0];
+
+        String trimmed = input.trim();
+        if (trimmed.isEmpty()) return new String[0];
+
+        String[] parts = trimmed.split("\\s+");
+        if (parts.length == 0) return new String[0];
+
+        String first = parts[0];
+        if (first.startsWith("/")) first = first.substring(1);
+
+        if (first.equalsIgnoreCase(commandName)) {
+            return parts.length > 1 ? Arrays.copyOfRange(parts, 1, parts.length) : new String[0];
+        }
+
+        return parts;
+    }
+}
@@ -0,0 +1,57 @@
+package dev.smugtox.hidehelmet.config;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * config.json: solo configuracion, separada de los datos de jugadores.
+ */
+public final class ConfigFile {
+
+    private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+    private final Path path;
+
+    public ConfigFile(Path path) {
+        this.path = path;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public boolean exists() {
+        return Files.exists(path);
+    }
+
+    /**
+     * @return la config del fichero, o una vacia (todo por defecto) si no existe
+     * @throws IOException si no se puede leer o no es JSON valido (la config en uso no se toca)
+     */
+    public PluginConfig load() throws IOException {
+        if (!exists()) return new PluginConfig();
+
+        String json = Files.readString(path, StandardCharsets.UTF_8);
+        try {
+            PluginConfig config = gson.fromJson(json, PluginConfig.class);
+            return config != null ? config : new PluginConfig();
+        } catch (JsonParseException e) {
+            throw new IOException("Invalid config.json: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Escribe via temporal + rename: el watcher nunca ve un fichero a medias.
+     */
+    public void write(PluginConfig config) throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.writeString(tmp, gson.toJson(config), StandardCharsets.UTF_8);
+        Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+}
@@ -0,0 +1,79 @@
+package dev.smugtox.hidehelmet.config;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Vigila un fichero con WatchService (se registra su directorio) y llama a onChange cuando cambia.
+ * Los editores generan varios eventos por guardado: se espera a QUIET_MS sin eventos y se avisa una vez.
+ * onChange corre en el hilo del watcher; no debe bloquear.
+ */
+public final class ConfigWatcher implements Closeable {
+
+    private static final long QUIET_MS = 250;
+
+    private final Path file;
+    private final Runnable onChange;
+    private final WatchService watchService;
+    private final Thread thread;
+
+    public ConfigWatcher(Path file, Runnable onChange) throws IOException {
+        this.file = file.getFileName();
+        this.onChange = onChange;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        file.toAbsolutePath().getParent().register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        this.thread = new Thread(this::run, "HideHelmet-ConfigWatch");
+        this.thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close(); // despierta al hilo con ClosedWatchServiceException
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                if (!matches(watchService.take())) continue;
+                // seguir drenando hasta que el directorio quede quieto
+                WatchKey key;
+                while ((key = watchService.poll(QUIET_MS, TimeUnit.MILLISECONDS)) != null) {
+                    matches(key);
+                }
+                try {
+                    onChange.run();
+                } catch (Exception e) {
+                    System.err.println("HideHelmet: Config reload failed: " + e.getMessage());
+                }
+            }
+        } catch (ClosedWatchServiceException | InterruptedException ignored) {
+            // cierre del plugin
+        }
+    }
+
+    /**
+     * Consume los eventos de la clave y la rearma.
+     * @return true si alguno era del fichero vigilado
+     */
+    private boolean matches(WatchKey key) {
+        boolean hit = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.context() instanceof Path changed && changed.equals(file)) hit = true;
+        }
+        key.reset();
+        return hit;
+    }
+}
@@ -0,0 +1,32 @@
+package dev.smugtox.hidehelmet.config;
+
+import java.util.Map;
+
+/**
+ * Contenido de config.json (antes el bloque "config" de players.json). Todo es opcional:
+ * null = valor por defecto. Las claves de Tuning se pueden cambiar en caliente; el resto
+ * (backend, red, export de metricas) solo se leen al arrancar.
+ */
+public final class PluginConfig {
+    public Long invalidateCooldownMs;
+    public Boolean pickupImmediate;
+    public Boolean selfRefresh;
+    public Long dedupWindowMs;
+    public Integer invalidateBudgetPer10Ms;
+    // nombre antiguo de invalidateBudgetPer10Ms: se lee si falta el nuevo y se quita al reescribir config.json
+    public Integer invalidateBudgetPerTick;
+    public Boolean adaptiveCooldown;
+    public Long minInvalidateCooldownMs;
+    public Long maxInvalidateCooldownMs;
+    public Long saveDebounceMs;
+    public String stateBackend;
+    public String remoteHost;
+    public Integer remotePort;
+    public Long remoteFlushMs;
+    public Integer remoteFlushRecords;
+    public Long journalCompactBytes;
+    public Boolean embeddedStateServer;
+    public Long metricsExportSeconds;
+    // evento -> accion, o para PlayerInteractEvent InteractionType -> accion (ver TriggerTable)
+    public Map<String, Object> triggers;
+}
@@ -0,0 +1,263 @@
+package dev.smugtox.hidehelmet.config;
+
+import dev.smugtox.hidehelmet.trigger.TriggerTable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Parametros que se pueden cambiar en caliente (config.json o /hhtune). Inmutable: un cambio
+ * se valida entero sobre una copia y se publica de una vez, o no se aplica nada.
+ */
+public final class Tuning {
+
+    public static final List<String> KEYS = List.of(
+            "invalidateCooldownMs", "pickupImmediate", "selfRefresh", "dedupWindowMs", "invalidateBudgetPer10Ms",
+            "adaptiveCooldown", "minInvalidateCooldownMs", "maxInvalidateCooldownMs", "saveDebounceMs");
+
+    public static final Tuning DEFAULTS = new Tuning(new Draft());
+
+    private final long invalidateCooldownMs;
+    private final boolean pickupImmediate;
+    private final boolean selfRefresh;
+    private final long dedupWindowMs;
+    private final int invalidateBudgetPer10Ms;
+    private final boolean adaptiveCooldown;
+    private final long minInvalidateCooldownMs;
+    private final long maxInvalidateCooldownMs;
+    private final long saveDebounceMs;
+    private final Map<String, Object> triggerConfig;
+    private final TriggerTable triggers;
+
+    private Tuning(Draft d) {
+        this.invalidateCooldownMs = d.invalidateCooldownMs;
+        this.pickupImmediate = d.pickupImmediate;
+        this.selfRefresh = d.selfRefresh;
+        // siempre por debajo de cualquier cooldown: una invalidacion diferida nunca cae dentro de la ventana
+        this.dedupWindowMs = Math.min(d.dedupWindowMs, maxDedupWindowMs(d));
+        this.invalidateBudgetPer10Ms = d.invalidateBudgetPer10Ms;
+        this.adaptiveCooldown = d.adaptiveCooldown;
+        this.minInvalidateCooldownMs = d.minInvalidateCooldownMs;
+        this.maxInvalidateCooldownMs = d.maxInvalidateCooldownMs;
+        this.saveDebounceMs = d.saveDebounceMs;
+        this.triggerConfig = d.triggerConfig;
+        // se recompila solo si cambio algo de lo que depende (compile avisa de entradas desconocidas)
+        this.triggers = d.triggers != null ? d.triggers : TriggerTable.compile(d.triggerConfig, d.pickupImmediate);
+    }
+
+    /**
+     * Valores de la config; los que faltan o no son validos se quedan por defecto.
+     */
+    public static Tuning from(PluginConfig config) {
+        Draft d = new Draft();
+        if (config.invalidateCooldownMs != null && config.invalidateCooldownMs > 0) {
+            d.invalidateCooldownMs = config.invalidateCooldownMs;
+        }
+        if (config.pickupImmediate != null) {
+            d.pickupImmediate = config.pickupImmediate;
+        }
+        if (config.selfRefresh != null) {
+            d.selfRefresh = config.selfRefresh;
+        }
+        if (config.dedupWindowMs != null && config.dedupWindowMs >= 0) {
+            d.dedupWindowMs = config.dedupWindowMs;
+        }
+        // invalidateBudgetPerTick es el nombre antiguo (el tick era el del scheduler, no el del mundo)
+        Integer budget = config.invalidateBudgetPer10Ms != null ? config.invalidateBudgetPer10Ms : config.invalidateBudgetPerTick;
+        if (budget != null && budget > 0) {
+            d.invalidateBudgetPer10Ms = budget;
+        }
+        if (config.adaptiveCooldown != null) {
+            d.adaptiveCooldown = config.adaptiveCooldown;
+        }
+        if (config.minInvalidateCooldownMs != null && config.minInvalidateCooldownMs >= 0) {
+            d.minInvalidateCooldownMs = config.minInvalidateCooldownMs;
+        }
+        if (config.maxInvalidateCooldownMs != null && config.maxInvalidateCooldownMs > 0) {
+            d.maxInvalidateCooldownMs = config.maxInvalidateCooldownMs;
+        }
+        if (config.saveDebounceMs != null && config.saveDebounceMs >= 0) {
+            d.saveDebounceMs = config.saveDebounceMs;
+        }
+        d.triggerConfig = config.triggers;
+        // la misma regla que with(); aqui no se lanza: el par invalido se queda por defecto
+        if (d.minInvalidateCooldownMs > d.maxInvalidateCooldownMs) {
+            Draft defaults = new Draft();
+            System.err.println("HideHelmet: minInvalidateCooldownMs (" + d.minInvalidateCooldownMs
+                    + ") must not exceed maxInvalidateCooldownMs (" + d.maxInvalidateCooldownMs + "), using defaults "
+                    + defaults.minInvalidateCooldownMs + " / " + defaults.maxInvalidateCooldownMs);
+            d.minInvalidateCooldownMs = defaults.minInvalidateCooldownMs;
+            d.maxInvalidateCooldownMs = defaults.maxInvalidateCooldownMs;
+        }
+        if (d.dedupWindowMs > maxDedupWindowMs(d)) {
+            System.err.println("HideHelmet: dedupWindowMs lowered to " + maxDedupWindowMs(d)
+                    + " (must be below invalidateCooldownMs and minInvalidateCooldownMs)");
+        }
+        return new Tuning(d);
+    }
+
+    /**
+     * Copia con key = value.
+     * @throws IllegalArgumentException si la clave no existe o el valor no es valido
+     */
+    public Tuning with(String key, String value) {
+        Draft d = new Draft(this);
+        switch (canonicalKey(key)) {
+            case "invalidateCooldownMs" -> d.invalidateCooldownMs = parseLong(key, value, 1);
+            case "pickupImmediate" -> {
+                d.pickupImmediate = parseBoolean(key, value);
+                d.triggers = null;
+            }
+            case "selfRefresh" -> d.selfRefresh = parseBoolean(key, value);
+            case "dedupWindowMs" -> d.dedupWindowMs = parseLong(key, value, 0);
+            case "invalidateBudgetPer10Ms" -> d.invalidateBudgetPer10Ms = (int) Math.min(Integer.MAX_VALUE, parseLong(key, value, 1));
+            case "adaptiveCooldown" -> d.adaptiveCooldown = parseBoolean(key, value);
+            case "minInvalidateCooldownMs" -> d.minInvalidateCooldownMs = parseLong(key, value, 0);
+            case "maxInvalidateCooldownMs" -> d.maxInvalidateCooldownMs = parseLong(key, value, 1);
+            case "saveDebounceMs" -> d.saveDebounceMs = parseLong(key, value, 0);
+            default -> throw new IllegalArgumentException("Unknown key: " + key);
+        }
+        if (d.minInvalidateCooldownMs > d.maxInvalidateCooldownMs) {
+            throw new IllegalArgumentException("minInvalidateCooldownMs must not exceed maxInvalidateCooldownMs");
+        }
+        // bajar un cooldown recorta la ventana; pedir una ventana demasiado grande es un error
+        if ("dedupWindowMs".equals(canonicalKey(key)) && d.dedupWindowMs > maxDedupWindowMs(d)) {
+            throw new IllegalArgumentException("dedupWindowMs must be below invalidateCooldownMs and minInvalidateCooldownMs (max "
+                    + maxDedupWindowMs(d) + ")");
+        }
+        return new Tuning(d);
+    }
+
+    /**
+     * Vuelca los valores en la config, para guardarlos en config.json.
+     */
+    public void writeTo(PluginConfig config) {
+        config.invalidateCooldownMs = invalidateCooldownMs;
+        config.pickupImmediate = pickupImmediate;
+        config.selfRefresh = selfRefresh;
+        config.dedupWindowMs = dedupWindowMs;
+        config.invalidateBudgetPer10Ms = invalidateBudgetPer10Ms;
+        config.invalidateBudgetPerTick = null;
+        config.adaptiveCooldown = adaptiveCooldown;
+        config.minInvalidateCooldownMs = minInvalidateCooldownMs;
+        config.maxInvalidateCooldownMs = maxInvalidateCooldownMs;
+        config.saveDebounceMs = saveDebounceMs;
+    }
+
+    public List<String> describe() {
+        List<String> lines = new ArrayList<>(KEYS.size());
+        lines.add("invalidateCooldownMs: " + invalidateCooldownMs);
+        lines.add("pickupImmediate: " + pickupImmediate);
+        lines.add("selfRefresh: " + selfRefresh);
+        lines.add("dedupWindowMs: " + dedupWindowMs);
+        lines.add("invalidateBudgetPer10Ms: " + invalidateBudgetPer10Ms);
+        lines.add("adaptiveCooldown: " + adaptiveCooldown);
+        lines.add("minInvalidateCooldownMs: " + minInvalidateCooldownMs);
+        lines.add("maxInvalidateCooldownMs: " + maxInvalidateCooldownMs);
+        lines.add("saveDebounceMs: " + saveDebounceMs);
+        return lines;
+    }
+
+    public long getInvalidateCooldownMs() {
+        return invalidateCooldownMs;
+    }
+
+    public boolean isPickupImmediate() {
+        return pickupImmediate;
+    }
+
+    public boolean isSelfRefresh() {
+        return selfRefresh;
+    }
+
+    public long getDedupWindowMs() {
+        return dedupWindowMs;
+    }
+
+    public int getInvalidateBudgetPer10Ms() {
+        return invalidateBudgetPer10Ms;
+    }
+
+    public boolean isAdaptiveCooldown() {
+        return adaptiveCooldown;
+    }
+
+    public long getMinInvalidateCooldownMs() {
+        return minInvalidateCooldownMs;
+    }
+
+    public long getMaxInvalidateCooldownMs() {
+        return maxInvalidateCooldownMs;
+    }
+
+    public long getSaveDebounceMs() {
+        return saveDebounceMs;
+    }
+
+    public TriggerTable getTriggers() {
+        return triggers;
+    }
+
+    private static long maxDedupWindowMs(Draft d) {
+        return Math.max(0, Math.min(d.invalidateCooldownMs, d.minInvalidateCooldownMs) - 1);
+    }
+
+    private static String canonicalKey(String key) {
+        for (String known : KEYS) {
+            if (known.equalsIgnoreCase(key)) return known;
+        }
+        return "";
+    }
+
+    private static long parseLong(String key, String value, long min) {
+        long parsed;
+        try {
+            parsed = Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(key + " must be a number");
+        }
+        if (parsed < min) throw new IllegalArgumentException(key + " must be at least " + min);
+        return parsed;
+    }
+
+    private static boolean parseBoolean(String key, String value) {
+        return switch (value.toLowerCase(Locale.ROOT)) {
+            case "true", "on" -> true;
+            case "false", "off" -> false;
+            default -> throw new IllegalArgumentException(key + " must be true or false");
+        };
+    }
+
+    private static final class Draft {
+        long invalidateCooldownMs = 150;
+        boolean pickupImmediate = true;
+        boolean selfRefresh = false;
+        // Menor que los cooldowns (ver maxDedupWindowMs)
+        long dedupWindowMs = 50;
+        int invalidateBudgetPer10Ms = 32;
+        boolean adaptiveCooldown = false;
+        long minInvalidateCooldownMs = 75;
+        long maxInvalidateCooldownMs = 500;
+        long saveDebounceMs = 1500;
+        Map<String, Object> triggerConfig;
+        TriggerTable triggers;
+
+        Draft() {}
+
+        Draft(Tuning t) {
+            invalidateCooldownMs = t.invalidateCooldownMs;
+            pickupImmediate = t.pickupImmediate;
+            selfRefresh = t.selfRefresh;
+            dedupWindowMs = t.dedupWindowMs;
+            invalidateBudgetPer10Ms = t.invalidateBudgetPer10Ms;
+            adaptiveCooldown = t.adaptiveCooldown;
+            minInvalidateCooldownMs = t.minInvalidateCooldownMs;
+            maxInvalidateCooldownMs = t.maxInvalidateCooldownMs;
+            saveDebounceMs = t.saveDebounceMs;
+            triggerConfig = t.triggerConfig;
+            triggers = t.triggers;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package dev.smugtox.hidehelmet.filter;
+
+import com.hypixel.hytale.protocol.ComponentUpdateType;
+import com.hypixel.hytale.protocol.Packet;
+
+import java.util.Set;
+
+/**
+ * Un paso de la cadena de FilterPipeline. Solo recibe los packets de packetTypes();
+ * para EntityUpdates, solo si el packet trae algun componente de componentTypes().
+ *
+ * Un filtro no modifica nunca el packet original ni sus objetos: todos los cambios van por PacketView,
+ * que copia lo necesario una sola vez aunque varios filtros cambien el mismo packet.
+ */
+public interface PacketFilter {
+
+    /**
+     * Clases exactas de packet que quiere ver el filtro. Se leen al anadirlo a la cadena.
+     */
+    Set<Class<? extends Packet>> packetTypes();
+
+    /**
+     * Para EntityUpdates: tipos de componente que le interesan. Vacio = todos los EntityUpdates.
+     */
+    default Set<ComponentUpdateType> componentTypes() {
+        return Set.of();
+    }
+
+    /**
+     * Posicion en la cadena, de menor a mayor (a igual orden, el que se anadio antes).
+     */
+    default int order() {
+        return 0;
+    }
+
+    /**
+     * Comprobacion barata antes de preparar la vista (p. ej. "este jugador no oculta nada").
+     */
+    default boolean isActive() {
+        return true;
+    }
+
+    void filter(PacketView view);
+}
@@ -0,0 +1,246 @@
+package dev.smugtox.hidehelmet.filter;
+
+import com.hypixel.hytale.protocol.ComponentUpdate;
+import com.hypixel.hytale.protocol.EntityUpdate;
+import com.hypixel.hytale.protocol.Packet;
+import com.hypixel.hytale.protocol.packets.entities.EntityUpdates;
+import dev.smugtox.hidehelmet.metrics.Metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Vista copy-on-write de un packet que recorre la cadena de filtros.
+ *
+ * Para EntityUpdates, el array de updates se copia como mucho una vez por packet, y cada EntityUpdate
+ * (con su array de componentes) como mucho una vez, la primera vez que un filtro lo cambia.
+ * Los filtros siguientes ven esas copias. Lo que se lee de la vista no se debe modificar.
+ */
+public final class PacketView {
+
+    private static final long ALL_COMPONENTS = -1L;
+
+    private final Packet original;
+    private final EntityUpdate[] originalUpdates;
+
+    // copia del array de updates; null hasta el primer cambio
+    private EntityUpdate[] updates;
+    private Packet replacement;
+    private boolean dropped;
+    private long componentTypes;
+    private boolean componentTypesScanned;
+
+    // packets a enviar detras de este; pasan solo por los filtros posteriores al que los pidio
+    private List<Packet> after;
+    private List<Integer> afterPositions;
+    int position;
+
+    PacketView(Packet original) {
+        this.original = original;
+        EntityUpdate[] updates = original instanceof EntityUpdates eu ? eu.updates : null;
+        this.originalUpdates = updates == null ? new EntityUpdate[0] : updates;
+    }
+
+    public Packet original() {
+        return original;
+    }
+
+    public boolean isEntityUpdates() {
+        return original instanceof EntityUpdates;
+    }
+
+    /**
+     * True si algun filtro ya cambio, reemplazo o descarto el packet.
+     */
+    public boolean isModified() {
+        return updates != null || replacement != null || dropped;
+    }
+
+    public int entityCount() {
+        return originalUpdates.length;
+    }
+
+    /**
+     * EntityUpdate actual en la posicion i (el original o la copia de un filtro anterior), o null si se quito.
+     */
+    public EntityUpdate entity(int i) {
+        return updates != null ? updates[i] : originalUpdates[i];
+    }
+
+    /**
+     * Sustituye el componente j de la entidad i. Copia la entidad si aun no es una copia.
+     */
+    public void setComponent(int i, int j, ComponentUpdate component) {
+        ownedEntity(i).updates[j] = component;
+    }
+
+    /**
+     * Quita el componente j de la entidad i. Si la entidad se queda sin componentes
+     * (y sin removed), se quita del packet al final.
+     */
+    public void removeComponent(int i, int j) {
+        ownedEntity(i).updates[j] = null;
+    }
+
+    public void removeEntity(int i) {
+        ownedUpdates()[i] = null;
+    }
+
+    /**
+     * Envia otro packet en lugar de este. Los filtros posteriores ya no pueden editar entidades.
+     */
+    public void replace(Packet packet) {
+        replacement = packet;
+    }
+
+    /**
+     * No enviar nada.
+     */
+    public void drop() {
+        dropped = true;
+    }
+
+    /**
+     * Envia packet justo despues de este. Solo lo ven los filtros que van detras del actual.
+     */
+    public void sendAfter(Packet packet) {
+        if (after == null) {
+            after = new ArrayList<>(2);
+            afterPositions = new ArrayList<>(2);
+        }
+        after.add(packet);
+        afterPositions.add(position);
+    }
+
+    /**
+     * Bits (1 << ordinal) de los ComponentUpdateType presentes en el EntityUpdates. Se calcula una vez por packet.
+     */
+    long componentTypes() {
+        if (!isEntityUpdates()) return ALL_COMPONENTS;
+        if (componentTypesScanned) return componentTypes;
+
+        long bits = 0;
+        for (EntityUpdate upd : originalUpdates) {
+            if (upd == null || upd.updates == null) continue;
+            for (ComponentUpdate cu : upd.updates) {
+                if (cu == null || cu.type == null) continue;
+                int ordinal = cu.type.ordinal();
+                bits |= ordinal < 64 ? 1L << ordinal : ALL_COMPONENTS;
+            }
+        }
+        componentTypes = bits;
+        componentTypesScanned = true;
+        return bits;
+    }
+
+    int afterCount() {
+        return after == null ? 0 : after.size();
+    }
+
+    Packet afterPacket(int k) {
+        return after.get(k);
+    }
+
+    int afterPosition(int k) {
+        return afterPositions.get(k);
+    }
+
+    /**
+     * @return el packet a enviar: el original si nadie lo cambio, o null si no queda nada
+     */
+    Packet build() {
+        if (dropped) return null;
+        if (replacement != null) return replacement;
+        if (updates == null) return original;
+
+        EntityUpdates eu = (EntityUpdates) original;
+        int removed = 0;
+        for (int i = 0; i < updates.length; i++) {
+            EntityUpdate upd = updates[i];
+            EntityUpdate orig = originalUpdates[i];
+            if (upd == orig) continue;
+            if (upd == null) {
+                if (orig != null) removed++;
+                continue;
+            }
+            if (upd.updates == null) continue;
+
+            int gone = countRemoved(upd.updates, orig.updates);
+            if (gone == 0) continue;
+            if (gone == upd.updates.length && (upd.removed == null || upd.removed.length == 0)) {
+                updates[i] = null;
+                removed++;
+            } else {
+                upd.updates = compact(upd.updates, orig.updates, gone);
+            }
+        }
+
+        EntityUpdate[] out = updates;
+        if (removed > 0) {
+            if (removed == out.length && (eu.removed == null || eu.removed.length == 0)) return null;
+            out = compact(out, originalUpdates, removed);
+        }
+
+        EntityUpdates copy = new EntityUpdates();
+        copy.removed = eu.removed; // no lo tocamos
+        copy.updates = out;
+        return copy;
+    }
+
+    private EntityUpdate[] ownedUpdates() {
+        if (replacement != null || dropped) throw new IllegalStateException("Packet already replaced or dropped");
+        if (updates == null) {
+            updates = originalUpdates.clone(); // shallow
+            Metrics.BYTES_CLONED.add(arrayBytes(updates.length));
+        }
+        return updates;
+    }
+
+    private EntityUpdate ownedEntity(int i) {
+        EntityUpdate[] owned = ownedUpdates();
+        EntityUpdate upd = owned[i];
+        EntityUpdate orig = originalUpdates[i];
+        if (upd != orig || upd == null) return upd;
+
+        // clonamos el EntityUpdate una sola vez para no mutar el original
+        EntityUpdate copy = new EntityUpdate();
+        copy.networkId = orig.networkId;
+        copy.removed = orig.removed; // no lo tocamos
+        if (orig.updates != null) {
+            copy.updates = orig.updates.clone(); // shallow de ComponentUpdate
+            Metrics.BYTES_CLONED.add(arrayBytes(copy.updates.length));
+        }
+        owned[i] = copy;
+        return copy;
+    }
+
+    /**
+     * Elementos quitados: null en la copia pero no en el original.
+     */
+    private static int countRemoved(Object[] copy, Object[] original) {
+        int gone = 0;
+        for (int j = 0; j < copy.length; j++) {
+            if (copy[j] == null && original[j] != null) gone++;
+        }
+        return gone;
+    }
+
+    private static <T> T[] compact(T[] copy, T[] original, int removed) {
+        T[] out = Arrays.copyOf(copy, copy.length - removed);
+        Metrics.BYTES_CLONED.add(arrayBytes(out.length));
+        int n = 0;
+        for (int j = 0; j < copy.length; j++) {
+            if (copy[j] == null && original[j] != null) continue;
+            out[n++] = copy[j];
+        }
+        return out;
+    }
+
+    /**
+     * Tamano aproximado de un array de referencias: cabecera + 4 bytes por referencia comprimida.
+     */
+    static long arrayBytes(int length) {
+        return 16 + 4L * length;
+    }
+}
@@ -0,0 +1,78 @@
+package dev.smugtox.hidehelmet.invalidate;
+
+/**
+ * Cooldown de invalidacion por jugador segun su ritmo de eventos.
+ *
+ * Se siguen dos medias moviles exponenciales del ritmo (eventos/s): una rapida (~250ms)
+ * y una lenta (~3s). Una rafaga corta (rapida alta, lenta baja) baja el cooldown al minimo
+ * para corregir enseguida; el spam sostenido (lenta alta) lo sube hacia el maximo.
+ * En reposo se usa el cooldown base.
+ */
+public final class AdaptiveCooldown {
+
+    private static final double FAST_TAU_MS = 250;
+    private static final double SLOW_TAU_MS = 3000;
+
+    // eventos/s
+    private static final double BURST_RATE = 4;
+    private static final double SUSTAINED_RATE = 8;
+
+    private final long minMs;
+    private final long maxMs;
+
+    public AdaptiveCooldown(long minMs, long maxMs) {
+        this.minMs = Math.max(0, Math.min(minMs, maxMs));
+        this.maxMs = Math.max(minMs, maxMs);
+    }
+
+    public long getMinMs() {
+        return minMs;
+    }
+
+    public long getMaxMs() {
+        return maxMs;
+    }
+
+    /**
+     * Registra un evento del jugador y devuelve su cooldown actual.
+     * Debe llamarse con el estado del jugador protegido (lo hace el scheduler).
+     */
+    long onEvent(Rates rates, long nowMs, long baseMs) {
+        long dt = rates.seen ? Math.max(0, nowMs - rates.lastEventMs) : Long.MAX_VALUE;
+        rates.lastEventMs = nowMs;
+        rates.seen = true;
+        // se decide con el ritmo de los eventos anteriores: el actual solo aportaria siempre 1000/tau
+        // (4 eventos/s en la rapida) y un evento aislado ya pareceria una rafaga
+        double fast = decay(rates.fast, dt, FAST_TAU_MS);
+        double slow = decay(rates.slow, dt, SLOW_TAU_MS);
+        rates.fast = fast + 1000.0 / FAST_TAU_MS;
+        rates.slow = slow + 1000.0 / SLOW_TAU_MS;
+
+        long cooldown;
+        if (slow >= SUSTAINED_RATE) {
+            double pressure = Math.min(1.0, (slow - SUSTAINED_RATE) / SUSTAINED_RATE);
+            cooldown = baseMs + (long) ((maxMs - baseMs) * pressure);
+        } else if (fast >= BURST_RATE) {
+            cooldown = minMs;
+        } else {
+            cooldown = baseMs;
+        }
+        return Math.max(minMs, Math.min(maxMs, cooldown));
+    }
+
+    private static double decay(double rate, long dtMs, double tauMs) {
+        if (dtMs == Long.MAX_VALUE) return 0;
+        return rate * Math.exp(-dtMs / tauMs);
+    }
+
+    /**
+     * Estado por jugador: dos doubles, un long y un flag, reservado una vez por jugador.
+     * lastEventMs viene de nanoTime y cualquier valor es valido (tambien 0): el primer evento lo marca seen.
+     */
+    static final class Rates {
+        double fast;
+        double slow;
+        long lastEventMs;
+        boolean seen;
+    }
+}
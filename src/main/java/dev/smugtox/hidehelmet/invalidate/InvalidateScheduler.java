@@ -0,0 +1,452 @@
+package dev.smugtox.hidehelmet.invalidate;
+
+import com.hypixel.hytale.server.core.entity.entities.Player;
+import com.hypixel.hytale.server.core.universe.world.World;
+import dev.smugtox.hidehelmet.jfr.InvalidateExecutedEvent;
+import dev.smugtox.hidehelmet.jfr.InvalidateScheduledEvent;
+import dev.smugtox.hidehelmet.metrics.Metrics;
+import dev.smugtox.hidehelmet.net.HideArmorFilter;
+import dev.smugtox.hidehelmet.trace.TraceKind;
+import dev.smugtox.hidehelmet.trace.Traces;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Invalidaciones de equipo con cooldown por jugador y presupuesto global.
+ *
+ * Las diferidas van a una rueda de tiempo (hashed timing wheel) de un solo hilo:
+ * un jugador ocupa como mucho una entrada, y en cada tick las que vencen se agrupan
+ * en un unico world.execute por mundo. Si el filtro del jugador ya envio un Equipment
+ * enmascarado despues de la ultima peticion, la diferida se descarta.
+ *
+ * Cada tick recarga un token bucket comun a todo el servidor. Lo que no cabe en el
+ * presupuesto se queda en colas por prioridad (pickup, comando, diferida) y se fusiona
+ * con las siguientes peticiones del mismo jugador; nunca se descarta. Un jugador se
+ * atiende como mucho una vez por tick, asi que nadie se queda con todo el presupuesto.
+ */
+public final class InvalidateScheduler {
+
+    public enum Priority {
+        /** Pickup con pickupImmediate: sin cooldown. */
+        PICKUP,
+        /** Cambio de mascara por comando: sin cooldown. */
+        COMMAND,
+        /** Clicks, crafteo, inventario: respeta el cooldown. */
+        DEFERRED
+    }
+
+    static final long TICK_MS = 10;
+    private static final int WHEEL_SIZE = 64; // potencia de 2, ~640ms por vuelta
+    private static final Priority[] PRIORITIES = Priority.values();
+
+    private static final int IDLE = 0;
+    private static final int IN_WHEEL = 1;
+    private static final int READY = 2;
+
+    private final ScheduledExecutorService executor;
+    private final Map<UUID, Entry> entries = new ConcurrentHashMap<>();
+
+    // Todo lo de abajo protegido por wheelLock
+    private final Object wheelLock = new Object();
+    private final Entry[] wheel = new Entry[WHEEL_SIZE];
+    private final Entry[] readyHead = new Entry[PRIORITIES.length];
+    private final Entry[] readyTail = new Entry[PRIORITIES.length];
+    private long currentTick;
+    private int tokens;
+
+    private volatile long cooldownMs;
+    private volatile boolean selfRefresh;
+    private volatile AdaptiveCooldown adaptiveCooldown;
+    private volatile int budgetPerTick = 32;
+    private volatile int budgetBurst = 64;
+
+    public InvalidateScheduler(long cooldownMs) {
+        this.cooldownMs = cooldownMs;
+        this.currentTick = Math.floorDiv(nowMs(System.nanoTime()), TICK_MS);
+        this.tokens = budgetBurst;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "HideHelmet-Invalidate");
+            t.setDaemon(true);
+            return t;
+        });
+        executor.scheduleAtFixedRate(this::tick, TICK_MS, TICK_MS, TimeUnit.MILLISECONDS);
+    }
+
+    public void setCooldownMs(long cooldownMs) {
+        this.cooldownMs = cooldownMs;
+    }
+
+    public long getCooldownMs() {
+        return cooldownMs;
+    }
+
+    /**
+     * Cooldown adaptativo por jugador; null para usar siempre el cooldown fijo.
+     */
+    public void setAdaptiveCooldown(AdaptiveCooldown adaptiveCooldown) {
+        this.adaptiveCooldown = adaptiveCooldown;
+    }
+
+    /**
+     * Invalidaciones permitidas por tick del scheduler (TICK_MS, 10ms; no el tick del mundo) en todo
+     * el servidor, y maximo acumulable.
+     */
+    public void setBudget(int perTick, int burst) {
+        this.budgetPerTick = Math.max(1, perTick);
+        this.budgetBurst = Math.max(this.budgetPerTick, burst);
+    }
+
+    /**
+     * Si esta activo, se reenvia el Equipment solo al propio jugador (via su HideArmorFilter)
+     * en lugar de invalidateEquipmentNetwork, que lo re-sincroniza con todos sus viewers.
+     */
+    public void setSelfRefresh(boolean selfRefresh) {
+        this.selfRefresh = selfRefresh;
+    }
+
+    public void bindFilter(Player player, HideArmorFilter filter) {
+        Entry entry = entries.computeIfAbsent(player.getPlayerRef().getUuid(), Entry::new);
+        entry.player = player;
+        entry.filter = filter;
+    }
+
+    /**
+     * Como request(Player, ...) para quien solo tiene el UUID (cambios llegados de otro nodo).
+     * @return false si el jugador no esta en este servidor
+     */
+    public boolean request(UUID uuid, Priority priority) {
+        Entry entry = entries.get(uuid);
+        Player player = entry == null ? null : entry.player;
+        if (player == null) return false;
+        request(player, priority);
+        return true;
+    }
+
+    /**
+     * Invalida ya si hay presupuesto y el jugador esta fuera de cooldown (o la prioridad no usa cooldown);
+     * si no, deja una unica invalidacion pendiente que se fusiona con las siguientes.
+     */
+    public void request(Player player, Priority priority) {
+        Metrics.INVALIDATES_REQUESTED.increment();
+        UUID uuid = player.getPlayerRef().getUuid();
+        Entry entry = entries.computeIfAbsent(uuid, Entry::new);
+        entry.player = player;
+
+        long nowNanos = System.nanoTime();
+        long now = nowMs(nowNanos);
+        AdaptiveCooldown adaptive = adaptiveCooldown;
+        synchronized (wheelLock) {
+            entry.lastRequestNanos = nowNanos;
+            entry.cooldownMs = adaptive == null ? cooldownMs : adaptive.onEvent(entry.rates, now, cooldownMs);
+
+            if (priority == Priority.DEFERRED && entry.state != READY
+                    && now - entry.lastInvalidateMs < entry.cooldownMs) {
+                long dueMs = entry.lastInvalidateMs + entry.cooldownMs;
+                if (entry.state == IDLE) {
+                    schedule(entry, dueMs);
+                    Metrics.INVALIDATES_DEFERRED.increment();
+                    traceScheduled(uuid, priority, InvalidateScheduledEvent.DEFERRED, entry.cooldownMs, dueMs - now);
+                } else {
+                    Metrics.INVALIDATES_COALESCED.increment();
+                    traceScheduled(uuid, priority, InvalidateScheduledEvent.COALESCED, entry.cooldownMs, dueMs - now);
+                }
+                return;
+            }
+
+            if (entry.state == READY || tokens <= 0 || entry.lastServedTick == currentTick) {
+                boolean pending = entry.state != IDLE;
+                (pending ? Metrics.INVALIDATES_COALESCED : Metrics.INVALIDATES_DEFERRED).increment();
+                traceScheduled(uuid, priority,
+                        pending ? InvalidateScheduledEvent.COALESCED : InvalidateScheduledEvent.DEFERRED,
+                        entry.cooldownMs, 0);
+                enqueue(entry, priority);
+                return;
+            }
+
+            Metrics.INVALIDATES_IMMEDIATE.increment();
+            traceScheduled(uuid, priority, InvalidateScheduledEvent.IMMEDIATE, entry.cooldownMs, 0);
+            unlink(entry);
+            tokens--;
+            served(entry, now);
+        }
+
+        execute(entry, player);
+    }
+
+    /**
+     * Muchas invalidaciones de golpe (operaciones de admin): se encolan todas con un solo lock y el tick
+     * las envia en un lote por mundo, dentro del presupuesto, en vez de una tarea por jugador.
+     * @return jugadores encolados (los que no estan en este servidor se saltan)
+     */
+    public int requestAll(Collection<UUID> uuids, Priority priority) {
+        int queued = 0;
+        long nowNanos = System.nanoTime();
+        synchronized (wheelLock) {
+            for (UUID uuid : uuids) {
+                Entry entry = entries.get(uuid);
+                if (entry == null || entry.player == null) continue;
+                entry.lastRequestNanos = nowNanos;
+                boolean pending = entry.state != IDLE;
+                (pending ? Metrics.INVALIDATES_COALESCED : Metrics.INVALIDATES_DEFERRED).increment();
+                traceScheduled(uuid, priority,
+                        pending ? InvalidateScheduledEvent.COALESCED : InvalidateScheduledEvent.DEFERRED,
+                        entry.cooldownMs, 0);
+                enqueue(entry, priority);
+                queued++;
+            }
+        }
+        Metrics.INVALIDATES_REQUESTED.add(queued);
+        return queued;
+    }
+
+    public void cancel(UUID uuid) {
+        Entry entry = entries.get(uuid);
+        if (entry == null) return;
+        synchronized (wheelLock) {
+            if (entry.state != IDLE) {
+                Metrics.INVALIDATES_CANCELLED.increment();
+                Traces.record(uuid, TraceKind.DROPPED, "cancelled", null, 0);
+            }
+            unlink(entry);
+        }
+    }
+
+    /**
+     * Olvida al jugador (desconexion): quita su entrada de la rueda y del mapa.
+     */
+    public void forget(UUID uuid) {
+        synchronized (wheelLock) {
+            Entry entry = entries.remove(uuid);
+            if (entry == null) return;
+            if (entry.state != IDLE) {
+                Metrics.INVALIDATES_CANCELLED.increment();
+                Traces.record(uuid, TraceKind.DROPPED, "disconnected", null, 0);
+            }
+            unlink(entry);
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void schedule(Entry entry, long dueMs) {
+        long dueTick = Math.floorDiv(dueMs + TICK_MS - 1, TICK_MS);
+        if (dueTick < currentTick) dueTick = currentTick;
+
+        entry.dueTick = dueTick;
+        entry.state = IN_WHEEL;
+        int bucket = (int) (dueTick & (WHEEL_SIZE - 1));
+        entry.prev = null;
+        entry.next = wheel[bucket];
+        if (entry.next != null) entry.next.prev = entry;
+        wheel[bucket] = entry;
+    }
+
+    /**
+     * Pone la entrada en la cola de su prioridad; si ya estaba en una cola de menos prioridad, la sube.
+     */
+    private void enqueue(Entry entry, Priority priority) {
+        if (entry.state == READY) {
+            if (priority.ordinal() >= entry.priority.ordinal()) return;
+            unlink(entry);
+        } else if (entry.state == IN_WHEEL) {
+            unlink(entry);
+        }
+
+        int q = priority.ordinal();
+        entry.priority = priority;
+        entry.state = READY;
+        entry.next = null;
+        entry.prev = readyTail[q];
+        if (entry.prev != null) entry.prev.next = entry;
+        else readyHead[q] = entry;
+        readyTail[q] = entry;
+    }
+
+    private void unlink(Entry entry) {
+        if (entry.state == IN_WHEEL) {
+            int bucket = (int) (entry.dueTick & (WHEEL_SIZE - 1));
+            if (entry.prev != null) entry.prev.next = entry.next;
+            else wheel[bucket] = entry.next;
+            if (entry.next != null) entry.next.prev = entry.prev;
+        } else if (entry.state == READY) {
+            int q = entry.priority.ordinal();
+            if (entry.prev != null) entry.prev.next = entry.next;
+            else readyHead[q] = entry.next;
+            if (entry.next != null) entry.next.prev = entry.prev;
+            else readyTail[q] = entry.prev;
+        }
+        entry.next = null;
+        entry.prev = null;
+        entry.state = IDLE;
+    }
+
+    private void served(Entry entry, long now) {
+        entry.state = IDLE;
+        entry.lastInvalidateMs = now;
+        entry.lastServedTick = currentTick;
+    }
+
+    private void tick() {
+        try {
+            long nowNanos = System.nanoTime();
+            long now = nowMs(nowNanos);
+            long nowTick = Math.floorDiv(now, TICK_MS);
+            Map<World, List<Entry>> batches = null;
+
+            synchronized (wheelLock) {
+                for (; currentTick <= nowTick; currentTick++) {
+                    Entry e = wheel[(int) (currentTick & (WHEEL_SIZE - 1))];
+                    while (e != null) {
+                        Entry next = e.next;
+                        if (e.dueTick <= nowTick) {
+                            enqueue(e, Priority.DEFERRED);
+                        }
+                        e = next;
+                    }
+                }
+                // Lo que se programe ahora con vencimiento pasado cae en nowTick y sale en el siguiente tick
+                currentTick = nowTick;
+                tokens = Math.min(budgetBurst, tokens + budgetPerTick);
+
+                for (Priority priority : PRIORITIES) {
+                    int q = priority.ordinal();
+                    Entry e = readyHead[q];
+                    while (e != null && tokens > 0) {
+                        Entry next = e.next;
+                        // Ya atendido en este tick por la via inmediata: espera al siguiente
+                        if (e.lastServedTick != currentTick) {
+                            unlink(e);
+                            boolean skip = priority == Priority.DEFERRED && alreadyRefreshed(e, nowNanos);
+                            served(e, now);
+
+                            Player player = e.player;
+                            World world = player == null ? null : player.getWorld();
+                            if (!skip && world != null) {
+                                tokens--;
+                                if (batches == null) batches = new HashMap<>();
+                                batches.computeIfAbsent(world, w -> new ArrayList<>()).add(e);
+                            } else {
+                                Metrics.INVALIDATES_CANCELLED.increment();
+                                Traces.record(e.uuid, TraceKind.DROPPED, skip ? "already-refreshed" : "no-world", null, 0);
+                            }
+                        }
+                        e = next;
+                    }
+                }
+            }
+
+            if (batches == null) return;
+            for (Map.Entry<World, List<Entry>> batch : batches.entrySet()) {
+                List<Entry> due = batch.getValue();
+                batch.getKey().execute(() -> {
+                    for (Entry entry : due) {
+                        invalidate(entry, entry.player);
+                    }
+                });
+            }
+        } catch (Throwable ignored) {
+            // Nunca dejamos morir el tick (scheduleAtFixedRate se cancelaria)
+        }
+    }
+
+    /**
+     * Milisegundos monotonos (nanoTime) para ticks, cooldowns y vencimientos: un salto del reloj
+     * del sistema no adelanta ni congela la rueda. El origen es arbitrario: puede ser 0 o negativo.
+     */
+    private static long nowMs(long nanos) {
+        return Math.floorDiv(nanos, 1_000_000L);
+    }
+
+    /**
+     * True si el cliente ya recibio un Equipment enmascarado posterior a la ultima peticion
+     * y dentro del cooldown: la invalidacion no le aportaria nada.
+     */
+    private static boolean alreadyRefreshed(Entry entry, long nowNanos) {
+        HideArmorFilter filter = entry.filter;
+        if (filter == null) return false;
+
+        long sent = filter.getLastMaskedSelfSentNanos();
+        if (sent == HideArmorFilter.NEVER) return false;
+        return sent - entry.lastRequestNanos >= 0
+                && nowNanos - sent < TimeUnit.MILLISECONDS.toNanos(entry.cooldownMs);
+    }
+
+    private void execute(Entry entry, Player player) {
+        World world = player.getWorld();
+        if (world == null) return;
+        world.execute(() -> invalidate(entry, player));
+    }
+
+    private void invalidate(Entry entry, Player player) {
+        Metrics.INVALIDATES_EXECUTED.increment();
+        InvalidateExecutedEvent event = new InvalidateExecutedEvent();
+        event.begin();
+        boolean refreshed = false;
+        try {
+            HideArmorFilter filter = entry.filter;
+            refreshed = selfRefresh && filter != null && filter.refreshSelf();
+            if (!refreshed) {
+                if (filter != null) filter.allowNextResend();
+                player.invalidateEquipmentNetwork();
+            }
+        } catch (Throwable ignored) {}
+
+        Traces.record(entry.uuid, TraceKind.EXECUTED, refreshed ? "self" : "network", null, 0);
+        event.end();
+        if (event.shouldCommit()) {
+            World world = player.getWorld();
+            event.player = entry.uuid.toString();
+            event.world = world == null ? null : world.getName();
+            event.selfRefresh = refreshed;
+            // lectura sin wheelLock: solo para el evento
+            event.queueDelay = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - entry.lastRequestNanos);
+            event.commit();
+        }
+    }
+
+    private static void traceScheduled(UUID uuid, Priority priority, String outcome, long cooldownMs, long delayMs) {
+        Traces.record(uuid, TraceKind.INVALIDATE, priority.name(), outcome, (int) cooldownMs);
+
+        InvalidateScheduledEvent event = new InvalidateScheduledEvent();
+        if (!event.shouldCommit()) return;
+        event.player = uuid.toString();
+        event.priority = priority.name();
+        event.outcome = outcome;
+        event.cooldown = cooldownMs;
+        event.delay = Math.max(0, delayMs);
+        event.commit();
+    }
+
+    private static final class Entry {
+        final UUID uuid;
+        volatile Player player;
+        volatile HideArmorFilter filter;
+
+        // protegidos por wheelLock
+        long lastInvalidateMs = Long.MIN_VALUE / 2;
+        long lastRequestNanos;
+        long cooldownMs;
+        final AdaptiveCooldown.Rates rates = new AdaptiveCooldown.Rates();
+        long lastServedTick = Long.MIN_VALUE; // los ticks de nanoTime pueden ser negativos
+        int state = IDLE;
+        Priority priority = Priority.DEFERRED;
+        long dueTick;
+        Entry prev;
+        Entry next;
+
+        Entry(UUID uuid) {
+            this.uuid = uuid;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package dev.smugtox.hidehelmet.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Una invalidacion ejecutandose en el hilo del mundo. La duracion del evento es lo que tardo alli.
+ */
+@Name("dev.smugtox.hidehelmet.InvalidateExecuted")
+@Label("HideHelmet Invalidate Executed")
+@Category({"HideHelmet", "Invalidation"})
+@Description("Equipment invalidate run on the world thread")
+@StackTrace(false)
+public final class InvalidateExecutedEvent extends Event {
+
+    @Label("Player")
+    public String player;
+
+    @Label("World")
+    public String world;
+
+    @Label("Self Refresh")
+    @Description("Only the player's own Equipment was resent")
+    public boolean selfRefresh;
+
+    @Label("Queue Delay")
+    @Description("Time from the last request to the start of execution")
+    @Timespan(Timespan.MILLISECONDS)
+    public long queueDelay;
+}
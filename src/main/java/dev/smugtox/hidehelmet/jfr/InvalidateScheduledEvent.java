@@ -0,0 +1,42 @@
+package dev.smugtox.hidehelmet.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Decision del InvalidateScheduler para una peticion: ejecutar ya, diferir o fusionar con una pendiente.
+ */
+@Name("dev.smugtox.hidehelmet.InvalidateScheduled")
+@Label("HideHelmet Invalidate Scheduled")
+@Category({"HideHelmet", "Invalidation"})
+@Description("Invalidate request handled by the scheduler")
+@StackTrace(false)
+public final class InvalidateScheduledEvent extends Event {
+
+    public static final String IMMEDIATE = "IMMEDIATE";
+    public static final String DEFERRED = "DEFERRED";
+    public static final String COALESCED = "COALESCED";
+
+    @Label("Player")
+    public String player;
+
+    @Label("Priority")
+    public String priority;
+
+    @Label("Outcome")
+    public String outcome;
+
+    @Label("Cooldown")
+    @Timespan(Timespan.MILLISECONDS)
+    public long cooldown;
+
+    @Label("Delay")
+    @Description("Time until the invalidate is due (0 if it waits for budget)")
+    @Timespan(Timespan.MILLISECONDS)
+    public long delay;
+}
@@ -0,0 +1,34 @@
+package dev.smugtox.hidehelmet.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * HideArmorFilter cambio un EntityUpdates (armadura oculta o Equipment propio descartado).
+ * La duracion del evento es lo que tardo el filtro.
+ */
+@Name("dev.smugtox.hidehelmet.PacketRewrite")
+@Label("HideHelmet Packet Rewrite")
+@Category({"HideHelmet", "Network"})
+@Description("Outgoing packet rewritten by the HideHelmet armor filter")
+@StackTrace(false)
+public final class PacketRewriteEvent extends Event {
+
+    @Label("Player")
+    public String player;
+
+    @Label("Mask")
+    public int mask;
+
+    @Label("Entity Updates")
+    @Description("Entity updates in the original packet")
+    public int entityUpdates;
+
+    @Label("Dropped")
+    @Description("Nothing left to send after dropping the duplicate self Equipment")
+    public boolean dropped;
+}
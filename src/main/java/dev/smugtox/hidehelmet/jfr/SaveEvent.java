@@ -0,0 +1,28 @@
+package dev.smugtox.hidehelmet.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Un guardado de los jugadores cambiados en el backend.
+ */
+@Name("dev.smugtox.hidehelmet.Save")
+@Label("HideHelmet Save")
+@Category({"HideHelmet", "Persistence"})
+@Description("Changed players written to the state backend")
+@StackTrace(false)
+public final class SaveEvent extends Event {
+
+    @Label("Records")
+    public int records;
+
+    @Label("Backend")
+    public String backend;
+
+    @Label("Success")
+    public boolean success;
+}
@@ -0,0 +1,33 @@
+package dev.smugtox.hidehelmet.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Un evento del servidor llego a uno de los handlers que pueden pedir una invalidacion.
+ */
+@Name("dev.smugtox.hidehelmet.Trigger")
+@Label("HideHelmet Trigger")
+@Category({"HideHelmet", "Invalidation"})
+@Description("Server event received by a HideHelmet fallback handler")
+@StackTrace(false)
+public final class TriggerEvent extends Event {
+
+    @Label("Player")
+    public String player;
+
+    @Label("Source")
+    @Description("Server event class")
+    public String source;
+
+    @Label("Interaction Type")
+    public String interactionType;
+
+    @Label("Masked")
+    @Description("The player had some slot hidden")
+    public boolean masked;
+}
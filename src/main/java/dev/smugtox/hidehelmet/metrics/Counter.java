@@ -0,0 +1,38 @@
+package dev.smugtox.hidehelmet.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contador monotono. LongAdder reparte las escrituras en celdas por hilo: sin contencion en el hot path.
+ */
+public final class Counter {
+
+    private final String name;
+    private final String help;
+    private final LongAdder value = new LongAdder();
+
+    Counter(String name, String help) {
+        this.name = name;
+        this.help = help;
+    }
+
+    public void increment() {
+        value.increment();
+    }
+
+    public void add(long amount) {
+        value.add(amount);
+    }
+
+    public long sum() {
+        return value.sum();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getHelp() {
+        return help;
+    }
+}
@@ -0,0 +1,95 @@
+package dev.smugtox.hidehelmet.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de latencias con cubos log2 en nanosegundos: el cubo i cuenta valores en [2^i, 2^(i+1)).
+ * Registrar es un numberOfLeadingZeros y dos LongAdder; los percentiles son la cota superior del cubo.
+ */
+public final class LatencyHistogram {
+
+    static final int BUCKETS = 64;
+
+    private final String name;
+    private final String help;
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder sumNanos = new LongAdder();
+
+    LatencyHistogram(String name, String help) {
+        this.name = name;
+        this.help = help;
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        buckets[bucketOf(nanos)].increment();
+        sumNanos.add(nanos);
+    }
+
+    /**
+     * Para medir con System.nanoTime(): record(System.nanoTime() - start).
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public long count() {
+        long total = 0;
+        for (LongAdder bucket : buckets) {
+            total += bucket.sum();
+        }
+        return total;
+    }
+
+    public long sumNanos() {
+        return sumNanos.sum();
+    }
+
+    /**
+     * Copia de los contadores de cada cubo (no es atomica respecto a escrituras concurrentes).
+     */
+    public long[] snapshot() {
+        long[] out = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            out[i] = buckets[i].sum();
+        }
+        return out;
+    }
+
+    /**
+     * @param quantile 0..1
+     * @return cota superior en nanos del cubo donde cae el percentil, o 0 si no hay muestras
+     */
+    public static long percentile(long[] snapshot, double quantile) {
+        long total = 0;
+        for (long c : snapshot) total += c;
+        if (total == 0) return 0;
+
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= Math.max(1, rank)) return upperBoundNanos(i);
+        }
+        return upperBoundNanos(snapshot.length - 1);
+    }
+
+    static long upperBoundNanos(int bucket) {
+        return bucket >= 62 ? Long.MAX_VALUE : 1L << (bucket + 1);
+    }
+
+    private static int bucketOf(long nanos) {
+        return nanos == 0 ? 0 : 63 - Long.numberOfLeadingZeros(nanos);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getHelp() {
+        return help;
+    }
+}
@@ -0,0 +1,176 @@
+package dev.smugtox.hidehelmet.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongSupplier;
+
+/**
+ * Registro de metricas del plugin. Los contadores son campos estaticos para que el hot path
+ * no busque nada: Metrics.PACKETS_INSPECTED.increment().
+ */
+public final class Metrics {
+
+    private static final List<Counter> COUNTERS = new ArrayList<>();
+    private static final List<LatencyHistogram> HISTOGRAMS = new ArrayList<>();
+    private static final List<Gauge> GAUGES = new CopyOnWriteArrayList<>();
+
+    // Packets
+    public static final Counter PACKETS_INSPECTED = counter("hidehelmet_packets_inspected_total",
+            "Packets que pasaron por la cadena de filtros");
+    public static final Counter PACKETS_REWRITTEN = counter("hidehelmet_packets_rewritten_total",
+            "Packets reemplazados por una copia con la armadura oculta o sin el Equipment propio");
+    public static final Counter BYTES_CLONED = counter("hidehelmet_array_bytes_cloned_total",
+            "Bytes estimados de arrays copiados al reescribir packets");
+    public static final Counter EQUIPMENT_CACHE_HITS = counter("hidehelmet_equipment_cache_hits_total",
+            "Equipment enmascarados reutilizados de la cache compartida entre viewers");
+    public static final Counter EQUIPMENT_CACHE_MISSES = counter("hidehelmet_equipment_cache_misses_total",
+            "Equipment enmascarados que hubo que copiar");
+    public static final Counter ARMOR_RULE_EVALUATIONS = counter("hidehelmet_armor_rule_evaluations_total",
+            "armorIds evaluados contra rules.json (fallos de la cache de decisiones)");
+    public static final Counter ARMOR_RULE_INTERNED = counter("hidehelmet_armor_rule_interned_total",
+            "armorIds encontrados en la cache de decisiones solo tras intern() (otra instancia del mismo String)");
+    public static final LatencyHistogram MAYBE_MODIFY = histogram("hidehelmet_maybe_modify_seconds",
+            "Latencia de la cadena de filtros (muestreada, 1 de cada 64 packets)");
+
+    // Invalidaciones
+    public static final Counter INVALIDATES_REQUESTED = counter("hidehelmet_invalidates_requested_total",
+            "Invalidaciones pedidas");
+    public static final Counter INVALIDATES_IMMEDIATE = counter("hidehelmet_invalidates_immediate_total",
+            "Invalidaciones ejecutadas en el momento de pedirlas");
+    public static final Counter INVALIDATES_DEFERRED = counter("hidehelmet_invalidates_deferred_total",
+            "Invalidaciones que quedaron pendientes (cooldown o presupuesto)");
+    public static final Counter INVALIDATES_COALESCED = counter("hidehelmet_invalidates_coalesced_total",
+            "Peticiones fusionadas con una invalidacion ya pendiente");
+    public static final Counter INVALIDATES_CANCELLED = counter("hidehelmet_invalidates_cancelled_total",
+            "Invalidaciones pendientes canceladas o descartadas por innecesarias");
+    public static final Counter INVALIDATES_EXECUTED = counter("hidehelmet_invalidates_executed_total",
+            "Invalidaciones ejecutadas en el hilo del mundo");
+
+    // Persistencia
+    public static final Counter SAVES = counter("hidehelmet_saves_total", "Guardados en el backend");
+    public static final Counter SAVED_RECORDS = counter("hidehelmet_saved_records_total", "Jugadores guardados");
+    public static final LatencyHistogram SAVE_TIME = histogram("hidehelmet_save_seconds", "Duracion de un guardado");
+    public static final Counter LOADS = counter("hidehelmet_loads_total", "Jugadores leidos del backend al conectar");
+    public static final Counter LOADED_RECORDS = counter("hidehelmet_loaded_records_total",
+            "Jugadores leidos con alguna pieza oculta");
+    public static final LatencyHistogram LOAD_TIME = histogram("hidehelmet_load_seconds",
+            "Tiempo desde la conexion hasta tener la mascara del jugador");
+
+    // Rango de cubos exportado a Prometheus: 128ns .. ~17s
+    private static final int EXPORT_FIRST_BUCKET = 6;
+    private static final int EXPORT_LAST_BUCKET = 33;
+
+    private Metrics() {}
+
+    /**
+     * Valor calculado al exportar (jugadores en memoria, etc.).
+     */
+    public static void gauge(String name, String help, LongSupplier value) {
+        GAUGES.removeIf(g -> g.name.equals(name));
+        GAUGES.add(new Gauge(name, help, value));
+    }
+
+    /**
+     * Resumen legible para /hhstats.
+     */
+    public static List<String> describe() {
+        List<String> lines = new ArrayList<>();
+        for (Counter counter : COUNTERS) {
+            lines.add(shortName(counter.getName()) + ": " + counter.sum());
+        }
+        for (Gauge gauge : GAUGES) {
+            lines.add(shortName(gauge.name) + ": " + gauge.value.getAsLong());
+        }
+        for (LatencyHistogram histogram : HISTOGRAMS) {
+            long[] snapshot = histogram.snapshot();
+            long count = 0;
+            for (long c : snapshot) count += c;
+            lines.add(shortName(histogram.getName()) + ": n=" + count
+                    + " p50<" + formatNanos(LatencyHistogram.percentile(snapshot, 0.50))
+                    + " p99<" + formatNanos(LatencyHistogram.percentile(snapshot, 0.99))
+                    + " max<" + formatNanos(LatencyHistogram.percentile(snapshot, 1.0)));
+        }
+        return lines;
+    }
+
+    /**
+     * Todas las metricas en formato de texto de Prometheus (exposition format 0.0.4).
+     */
+    public static String toPrometheusText() {
+        StringBuilder out = new StringBuilder(4096);
+        for (Counter counter : COUNTERS) {
+            header(out, counter.getName(), counter.getHelp(), "counter");
+            out.append(counter.getName()).append(' ').append(counter.sum()).append('\n');
+        }
+        for (Gauge gauge : GAUGES) {
+            header(out, gauge.name, gauge.help, "gauge");
+            out.append(gauge.name).append(' ').append(gauge.value.getAsLong()).append('\n');
+        }
+        for (LatencyHistogram histogram : HISTOGRAMS) {
+            String name = histogram.getName();
+            header(out, name, histogram.getHelp(), "histogram");
+
+            long[] snapshot = histogram.snapshot();
+            long cumulative = 0;
+            for (int i = 0; i < snapshot.length; i++) {
+                cumulative += snapshot[i];
+                if (i < EXPORT_FIRST_BUCKET || i > EXPORT_LAST_BUCKET) continue;
+                out.append(name).append("_bucket{le=\"")
+                        .append(seconds(LatencyHistogram.upperBoundNanos(i)))
+                        .append("\"} ").append(cumulative).append('\n');
+            }
+            out.append(name).append("_bucket{le=\"+Inf\"} ").append(cumulative).append('\n');
+            out.append(name).append("_sum ").append(seconds(histogram.sumNanos())).append('\n');
+            out.append(name).append("_count ").append(cumulative).append('\n');
+        }
+        return out.toString();
+    }
+
+    private static Counter counter(String name, String help) {
+        Counter counter = new Counter(name, help);
+        COUNTERS.add(counter);
+        return counter;
+    }
+
+    private static LatencyHistogram histogram(String name, String help) {
+        LatencyHistogram histogram = new LatencyHistogram(name, help);
+        HISTOGRAMS.add(histogram);
+        return histogram;
+    }
+
+    private static void header(StringBuilder out, String name, String help, String type) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static String shortName(String name) {
+        String s = name.startsWith("hidehelmet_") ? name.substring("hidehelmet_".length()) : name;
+        return s.endsWith("_total") ? s.substring(0, s.length() - "_total".length()) : s;
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.9g", nanos / 1e9);
+    }
+
+    private static String formatNanos(long nanos) {
+        if (nanos == Long.MAX_VALUE) return "inf";
+        if (nanos < 1_000) return nanos + "ns";
+        if (nanos < 1_000_000) return String.format(Locale.ROOT, "%.1fus", nanos / 1e3);
+        if (nanos < 1_000_000_000) return String.format(Locale.ROOT, "%.1fms", nanos / 1e6);
+        return String.format(Locale.ROOT, "%.2fs", nanos / 1e9);
+    }
+
+    private static final class Gauge {
+        final String name;
+        final String help;
+        final LongSupplier value;
+
+        Gauge(String name, String help, LongSupplier value) {
+            this.name = name;
+            this.help = help;
+            this.value = value;
+        }
+    }
+}
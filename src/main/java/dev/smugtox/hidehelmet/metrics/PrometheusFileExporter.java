@@ -0,0 +1,51 @@
+package dev.smugtox.hidehelmet.metrics;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Escribe las metricas cada N segundos en un fichero de texto de Prometheus
+ * (para el textfile collector de node_exporter). Se escribe a un temporal y se renombra.
+ */
+public final class PrometheusFileExporter {
+
+    private final Path path;
+    private final Path tmp;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "HideHelmet-Metrics");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public PrometheusFileExporter(Path path) {
+        this.path = path;
+        this.tmp = path.resolveSibling(path.getFileName() + ".tmp");
+    }
+
+    public void start(long intervalSeconds) {
+        executor.scheduleWithFixedDelay(this::exportQuietly, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    public void export() throws IOException {
+        Files.writeString(tmp, Metrics.toPrometheusText(), StandardCharsets.UTF_8);
+        Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void exportQuietly() {
+        try {
+            export();
+        } catch (Exception e) {
+            System.err.println("HideHelmet: Failed to export metrics: " + e.getMessage());
+        }
+    }
+}
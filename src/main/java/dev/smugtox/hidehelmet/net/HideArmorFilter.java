@@ -0,0 +1,389 @@
+package dev.smugtox.hidehelmet.net;
+
+import com.hypixel.hytale.protocol.ComponentUpdate;
+import com.hypixel.hytale.protocol.ComponentUpdateType;
+import com.hypixel.hytale.protocol.EntityUpdate;
+import com.hypixel.hytale.protocol.Equipment;
+import com.hypixel.hytale.protocol.Packet;
+import com.hypixel.hytale.protocol.packets.entities.EntityUpdates;
+
+import dev.smugtox.hidehelmet.HideArmorState;
+import dev.smugtox.hidehelmet.IntSet;
+import dev.smugtox.hidehelmet.MaskHandle;
+import dev.smugtox.hidehelmet.filter.FilterPipeline;
+import dev.smugtox.hidehelmet.filter.PacketFilter;
+import dev.smugtox.hidehelmet.filter.PacketView;
+import dev.smugtox.hidehelmet.jfr.PacketRewriteEvent;
+import dev.smugtox.hidehelmet.metrics.Metrics;
+import dev.smugtox.hidehelmet.rules.ArmorRules;
+import dev.smugtox.hidehelmet.trace.DecisionTrace;
+import dev.smugtox.hidehelmet.trace.TraceKind;
+import dev.smugtox.hidehelmet.trace.Traces;
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Filtro de HideArmor en la FilterPipeline del viewer.
+ * Solo modifica EntityUpdates -> Equipment: el del propio jugador (selfNetworkId) con su mascara,
+ * y el de los demas jugadores del mundo si el viewer activo el modo "others" (MaskHandle.getOthersMask).
+ */
+public final class HideArmorFilter implements PacketFilter {
+
+    private static final int MASK_VALUES = 16;
+    private static final int[][] HIDE_PLAN = buildHidePlan();
+
+    private static final Set<Class<? extends Packet>> PACKET_TYPES = Set.of(EntityUpdates.class);
+    private static final Set<ComponentUpdateType> COMPONENT_TYPES = Set.of(ComponentUpdateType.Equipment);
+
+    public static final long NEVER = Long.MIN_VALUE;
+
+    private static volatile long dedupWindowNanos = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final FilterPipeline pipeline;
+    private final MaskHandle viewer;
+    private final int selfNetworkId;
+
+    // networkIds de los jugadores del mundo del viewer (modo others)
+    private volatile IntSet worldPlayers = new IntSet();
+
+    // Ultimo Equipment original (sin mascara) visto para el propio jugador
+    private volatile Equipment lastSelfEquipment;
+
+    // Huella del ultimo Equipment propio (ya enmascarado) que salio hacia el cliente
+    private long lastSentFingerprint;
+    private volatile long lastSentNanos = NEVER;
+
+    // El siguiente Equipment propio sale aunque sea igual al ultimo (lo pide el InvalidateScheduler)
+    private volatile boolean resendPending;
+
+    public HideArmorFilter(FilterPipeline pipeline, UUID viewerUuid, int selfNetworkId) {
+        this(pipeline, HideArmorState.handle(viewerUuid), selfNetworkId);
+    }
+
+    public HideArmorFilter(FilterPipeline pipeline, MaskHandle viewer, int selfNetworkId) {
+        this.pipeline = pipeline;
+        this.viewer = viewer;
+        this.selfNetworkId = selfNetworkId;
+    }
+
+    /**
+     * Tiempo maximo durante el que se descarta un Equipment propio identico al ultimo enviado.
+     * Pasado ese tiempo se reenvia aunque sea igual, para que una correccion siempre llegue. 0 = desactivado.
+     */
+    public static void setDedupWindowMs(long windowMs) {
+        dedupWindowNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, windowMs));
+    }
+
+    /**
+     * El proximo Equipment propio no pasa por el dedup, una sola vez. Se llama antes de
+     * invalidateEquipmentNetwork: lo que se reenvia es una correccion y tiene que llegar.
+     */
+    public void allowNextResend() {
+        resendPending = true;
+    }
+
+    /**
+     * Indice de jugadores del mundo en el que esta el viewer; se cambia si cambia de mundo.
+     */
+    public void setWorldPlayers(IntSet worldPlayers) {
+        this.worldPlayers = worldPlayers;
+    }
+
+    /**
+     * System.nanoTime() del ultimo Equipment propio (con mascara) enviado al cliente, o NEVER.
+     */
+    public long getLastMaskedSelfSentNanos() {
+        return lastSentNanos;
+    }
+
+    @Override
+    public Set<Class<? extends Packet>> packetTypes() {
+        return PACKET_TYPES;
+    }
+
+    @Override
+    public Set<ComponentUpdateType> componentTypes() {
+        return COMPONENT_TYPES;
+    }
+
+    /**
+     * Leemos las mascaras (campos del handle) antes de que la pipeline prepare nada.
+     * Con la mascara propia a 0 no se registra el Equipment propio: el ultimo visto deja de valer
+     * para refreshSelf (el jugador puede cambiar de armadura antes de volver a ocultarla).
+     */
+    @Override
+    public boolean isActive() {
+        int mask = viewer.getMask();
+        if (mask == 0 && lastSelfEquipment != null) lastSelfEquipment = null;
+        return (mask | viewer.getOthersMask()) != 0;
+    }
+
+    /**
+     * Reenvia solo a este jugador su ultimo Equipment visto, con la mascara actual.
+     * Sustituye a invalidateEquipmentNetwork (que re-sincroniza con todos los viewers).
+     * Pasa solo por los filtros que van detras de este en la pipeline.
+     * @return false si no hay Equipment propio visto desde que se oculto algo y hay que invalidar normal
+     */
+    public boolean refreshSelf() {
+        Equipment equipment = lastSelfEquipment;
+        if (equipment == null) return false;
+
+        int mask = effectiveMask(equipment, viewer.getMask());
+        int[] plan = HIDE_PLAN[mask];
+        ComponentUpdate cu = new ComponentUpdate();
+        cu.type = ComponentUpdateType.Equipment;
+        cu.equipment = needsRewrite(equipment.armorIds, plan) ? maskedCopy(equipment, mask, plan) : equipment;
+        // Es una correccion: se envia siempre, pero cuenta para el dedup
+        recordSent(fingerprint(equipment, plan), System.nanoTime());
+
+        EntityUpdate upd = new EntityUpdate();
+        upd.networkId = selfNetworkId;
+        upd.updates = new ComponentUpdate[] { cu };
+
+        EntityUpdates out = new EntityUpdates();
+        out.updates = new EntityUpdate[] { upd };
+        pipeline.writeAfter(this, out);
+        return true;
+    }
+
+    @Override
+    public void filter(PacketView view) {
+        // Con JFR apagado, begin/shouldCommit son casi gratis y el evento no llega a reservarse
+        PacketRewriteEvent event = new PacketRewriteEvent();
+        event.begin();
+
+        int mask = viewer.getMask();
+        int othersMask = viewer.getOthersMask();
+        int count = view.entityCount();
+        Outcome outcome = Outcome.NONE;
+
+        if (othersMask != 0) {
+            outcome = rewriteAll(view, mask, othersMask);
+        } else if (mask != 0) {
+            for (int i = 0; i < count; i++) {
+                EntityUpdate upd = view.entity(i);
+                if (upd == null || upd.networkId != selfNetworkId) continue;
+
+                // El propio jugador aparece una sola vez por packet: no seguimos escaneando
+                outcome = rewriteSelf(view, i, upd, mask);
+                break;
+            }
+        }
+
+        if (outcome == Outcome.NONE) return;
+        if (event.shouldCommit()) {
+            event.player = viewer.getUuid().toString();
+            event.mask = mask;
+            event.entityUpdates = count;
+            event.dropped = outcome == Outcome.DEDUPED;
+            event.commit();
+        }
+    }
+
+    /**
+     * Modo others: decide por cada entidad del batch (propio jugador, otro jugador o resto)
+     * con una consulta al IntSet de jugadores por entidad. La vista copia solo lo que cambia.
+     */
+    private Outcome rewriteAll(PacketView view, int mask, int othersMask) {
+        IntSet players = worldPlayers;
+        Outcome outcome = Outcome.NONE;
+
+        for (int i = 0; i < view.entityCount(); i++) {
+            EntityUpdate upd = view.entity(i);
+            if (upd == null) continue;
+
+            if (upd.networkId == selfNetworkId) {
+                if (mask == 0) continue;
+                Outcome self = rewriteSelf(view, i, upd, mask);
+                if (self != Outcome.NONE) outcome = self;
+            } else {
+                if (players.contains(upd.networkId) && rewriteOther(view, i, upd, othersMask) && outcome == Outcome.NONE) {
+                    outcome = Outcome.REWRITTEN;
+                }
+            }
+        }
+        return outcome;
+    }
+
+    /**
+     * Oculta la armadura de otro jugador. Sin dedup: el Equipment enmascarado sale de la cache compartida entre viewers.
+     * @return true si cambio algo
+     */
+    private static boolean rewriteOther(PacketView view, int i, EntityUpdate upd, int mask) {
+        ComponentUpdate[] components = upd.updates;
+        if (components == null) return false;
+
+        boolean changed = false;
+        for (int j = 0; j < components.length; j++) {
+            ComponentUpdate cu = components[j];
+            if (cu == null || cu.type != ComponentUpdateType.Equipment || cu.equipment == null) continue;
+            int effective = effectiveMask(cu.equipment, mask);
+            int[] plan = HIDE_PLAN[effective];
+            if (!needsRewrite(cu.equipment.armorIds, plan)) continue;
+
+            ComponentUpdate replacement = new ComponentUpdate();
+            replacement.type = cu.type;
+            replacement.equipment = maskedCopy(cu.equipment, effective, plan);
+            view.setComponent(i, j, replacement);
+            changed = true;
+        }
+        return changed;
+    }
+
+    /**
+     * Oculta la armadura del propio jugador en la entidad i de la vista.
+     * Los Equipment identicos al ultimo enviado (dentro de la ventana de dedup) se quitan, salvo el
+     * primero tras allowNextResend;
+     * si la entidad se queda sin componentes, la vista la quita del packet.
+     * No reserva memoria hasta encontrar algo que realmente haya que cambiar.
+     */
+    private Outcome rewriteSelf(PacketView view, int i, EntityUpdate upd, int mask) {
+        ComponentUpdate[] components = upd.updates;
+        if (components == null) return Outcome.NONE;
+
+        DecisionTrace trace = Traces.get(viewer.getUuid());
+        Outcome outcome = Outcome.NONE;
+        long window = dedupWindowNanos;
+
+        for (int j = 0; j < components.length; j++) {
+            ComponentUpdate cu = components[j];
+            if (cu == null || cu.type != ComponentUpdateType.Equipment || cu.equipment == null) continue;
+
+            lastSelfEquipment = cu.equipment;
+            int effective = effectiveMask(cu.equipment, mask);
+            int[] plan = HIDE_PLAN[effective];
+
+            long now = System.nanoTime();
+            long fingerprint = fingerprint(cu.equipment, plan);
+            long lastSent = lastSentNanos;
+            boolean forced = resendPending;
+            if (forced) resendPending = false;
+            if (!forced && window > 0 && lastSent != NEVER && fingerprint == lastSentFingerprint && now - lastSent < window) {
+                // El cliente ya tiene exactamente esto
+                view.removeComponent(i, j);
+                outcome = Outcome.DEDUPED;
+                if (trace != null) trace.record(TraceKind.EQUIPMENT, "deduped", null, mask);
+                continue;
+            }
+
+            recordSent(fingerprint, now);
+            if (!needsRewrite(cu.equipment.armorIds, plan)) {
+                if (trace != null) trace.record(TraceKind.EQUIPMENT, "unchanged", null, mask);
+                continue;
+            }
+            if (trace != null) trace.record(TraceKind.EQUIPMENT, "rewritten", null, mask);
+
+            ComponentUpdate replacement = new ComponentUpdate();
+            replacement.type = cu.type;
+            replacement.equipment = maskedCopy(cu.equipment, effective, plan);
+            view.setComponent(i, j, replacement);
+            if (outcome == Outcome.NONE) outcome = Outcome.REWRITTEN;
+        }
+        return outcome;
+    }
+
+    private void recordSent(long fingerprint, long nanos) {
+        lastSentFingerprint = fingerprint;
+        lastSentNanos = nanos;
+    }
+
+    /**
+     * Huella de 64 bits del Equipment tal y como lo vera el cliente (con el plan aplicado).
+     * Usa los hashCode cacheados de los String, sin reservar memoria.
+     */
+    private static long fingerprint(Equipment equipment, int[] plan) {
+        long h = 0x9E3779B97F4A7C15L;
+        h = mix(h, hashOf(equipment.rightHandItemId));
+        h = mix(h, hashOf(equipment.leftHandItemId));
+
+        String[] armorIds = equipment.armorIds;
+        if (armorIds == null) return mix(h, -1);
+
+        int hidden = 0;
+        for (int slot : plan) hidden |= 1 << slot;
+        for (int slot = 0; slot < armorIds.length; slot++) {
+            boolean blank = slot < 32 && (hidden & (1 << slot)) != 0;
+            h = mix(h, blank ? 0 : hashOf(armorIds[slot]));
+        }
+        return mix(h, armorIds.length);
+    }
+
+    private static int hashOf(String s) {
+        return s == null || s.isEmpty() ? 0 : s.hashCode();
+    }
+
+    private static long mix(long h, int v) {
+        h ^= v;
+        h *= 0xff51afd7ed558ccdL;
+        return h ^ (h >>> 32);
+    }
+
+    /**
+     * Mascara que se aplica a este Equipment: la pedida menos las piezas que rules.json muestra siempre.
+     * Sin reglas es una lectura volatile; con reglas, una busqueda por identidad por pieza oculta.
+     */
+    private static int effectiveMask(Equipment equipment, int mask) {
+        return ArmorRules.current().filter(equipment.armorIds, mask);
+    }
+
+    private static boolean needsRewrite(String[] armorIds, int[] plan) {
+        if (armorIds == null) return false;
+        for (int slot : plan) {
+            if (slot >= armorIds.length) break; // el plan esta ordenado
+            String id = armorIds[slot];
+            if (id != null && !id.isEmpty()) return true;
+        }
+        return false;
+    }
+
+    private static Equipment maskedCopy(Equipment equipment, int mask, int[] plan) {
+        long key = fingerprint(equipment, HIDE_PLAN[0]);
+        Equipment cached = MaskedEquipmentCache.get(equipment, key, mask);
+        if (cached != null) return cached;
+
+        // clonamos Equipment de forma segura
+        Equipment eqCopy = new Equipment();
+        eqCopy.rightHandItemId = equipment.rightHandItemId;
+        eqCopy.leftHandItemId = equipment.leftHandItemId;
+        eqCopy.armorIds = applyPlan(equipment.armorIds, plan);
+        MaskedEquipmentCache.put(equipment, key, mask, eqCopy);
+        return eqCopy;
+    }
+
+    private static String[] applyPlan(String[] armorIds, int[] plan) {
+        String[] out = armorIds.clone();
+        Metrics.BYTES_CLONED.add(arrayBytes(out.length));
+        for (int slot : plan) {
+            if (slot >= out.length) break;
+            out[slot] = "";
+        }
+        return out;
+    }
+
+    /**
+     * Tamano aproximado de un array de referencias: cabecera + 4 bytes por referencia comprimida.
+     */
+    private static long arrayBytes(int length) {
+        return 16 + 4L * length;
+    }
+
+    /**
+     * Para cada mascara (0..15) los indices de armorIds que hay que vaciar, en orden ascendente.
+     */
+    private static int[][] buildHidePlan() {
+        int[][] plans = new int[MASK_VALUES][];
+        for (int mask = 0; mask < MASK_VALUES; mask++) {
+            int[] plan = new int[Integer.bitCount(mask)];
+            int n = 0;
+            for (int slot = HideArmorState.SLOT_HEAD; slot <= HideArmorState.SLOT_LEGS; slot++) {
+                if ((mask & (1 << slot)) != 0) plan[n++] = slot;
+            }
+            plans[mask] = plan;
+        }
+        return plans;
+    }
+
+    private enum Outcome { NONE, REWRITTEN, DEDUPED }
+}
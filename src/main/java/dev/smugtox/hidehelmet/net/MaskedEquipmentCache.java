@@ -0,0 +1,79 @@
+package dev.smugtox.hidehelmet.net;
+
+import com.hypixel.hytale.protocol.Equipment;
+import dev.smugtox.hidehelmet.metrics.Metrics;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Cache direct-mapped de Equipment ya enmascarados, compartida por todos los HideArmorFilter.
+ * El servidor envia el mismo Equipment a cada viewer que ve a la entidad:
+ * con la cache se copia una vez por mascara, no una vez por viewer.
+ *
+ * Clave por contenido (huella de manos + armorIds, y mascara), no por identidad: los DTO son mutables
+ * y una instancia reutilizada con otras piezas no debe devolver la copia vieja. Cada entrada guarda
+ * una copia de lo que enmascaro y se compara entera antes de devolverla, asi que una colision
+ * de huella solo cuesta un fallo. Sin locks: Entry es inmutable, una lectura concurrente ve
+ * una entrada completa o la anterior.
+ */
+final class MaskedEquipmentCache {
+
+    private static final int SIZE = 1024;
+    private static final Entry[] ENTRIES = new Entry[SIZE];
+
+    private MaskedEquipmentCache() {}
+
+    /**
+     * @param fingerprint huella del contenido de source, sin mascara
+     * @return la copia enmascarada de source, o null si no esta en cache
+     */
+    static Equipment get(Equipment source, long fingerprint, int mask) {
+        Entry e = ENTRIES[index(fingerprint, mask)];
+        if (e != null && e.fingerprint == fingerprint && e.mask == mask && e.matches(source)) {
+            Metrics.EQUIPMENT_CACHE_HITS.increment();
+            return e.masked;
+        }
+        Metrics.EQUIPMENT_CACHE_MISSES.increment();
+        return null;
+    }
+
+    static void put(Equipment source, long fingerprint, int mask, Equipment masked) {
+        String[] armorIds = source.armorIds.clone();
+        Metrics.BYTES_CLONED.add(16 + 4L * armorIds.length);
+        ENTRIES[index(fingerprint, mask)] = new Entry(fingerprint, mask,
+                source.rightHandItemId, source.leftHandItemId, armorIds, masked);
+    }
+
+    private static int index(long fingerprint, int mask) {
+        int h = (int) (fingerprint ^ (fingerprint >>> 32)) * 31 + mask;
+        h ^= h >>> 16;
+        return h & (SIZE - 1);
+    }
+
+    private static final class Entry {
+        final long fingerprint;
+        final int mask;
+        // lo que se enmascaro, copiado: el Equipment original puede cambiar despues
+        final String rightHandItemId;
+        final String leftHandItemId;
+        final String[] armorIds;
+        final Equipment masked;
+
+        Entry(long fingerprint, int mask, String rightHandItemId, String leftHandItemId,
+              String[] armorIds, Equipment masked) {
+            this.fingerprint = fingerprint;
+            this.mask = mask;
+            this.rightHandItemId = rightHandItemId;
+            this.leftHandItemId = leftHandItemId;
+            this.armorIds = armorIds;
+            this.masked = masked;
+        }
+
+        boolean matches(Equipment source) {
+            return Objects.equals(rightHandItemId, source.rightHandItemId)
+                    && Objects.equals(leftHandItemId, source.leftHandItemId)
+                    && Arrays.equals(armorIds, source.armorIds);
+        }
+    }
+}
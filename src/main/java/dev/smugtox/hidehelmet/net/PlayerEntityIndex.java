@@ -0,0 +1,79 @@
+package dev.smugtox.hidehelmet.net;
+
+import com.hypixel.hytale.server.core.entity.entities.Player;
+import com.hypixel.hytale.server.core.universe.world.World;
+import dev.smugtox.hidehelmet.IntSet;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * networkIds de los jugadores de cada mundo, para que HideArmorFilter distinga jugadores del resto
+ * de entidades en un EntityUpdates sin buscar nada por objeto.
+ * Se actualiza al instalar el filtro (PlayerReadyEvent) y al desconectar.
+ */
+public final class PlayerEntityIndex {
+
+    private final ConcurrentHashMap<String, IntSet> worlds = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<UUID, Tracked> players = new ConcurrentHashMap<>();
+
+    public IntSet world(World world) {
+        return worlds.computeIfAbsent(world.getName(), name -> new IntSet());
+    }
+
+    /**
+     * Registra al jugador en su mundo actual y lo quita del anterior si cambio de mundo o de networkId.
+     */
+    public void track(Player player, World world) {
+        IntSet index = world(world);
+        int networkId = player.getNetworkId();
+        index.add(networkId);
+
+        Tracked previous = players.put(player.getPlayerRef().getUuid(), new Tracked(player, index, networkId));
+        if (previous != null && (previous.index != index || previous.networkId != networkId)) {
+            previous.index.remove(previous.networkId);
+        }
+    }
+
+    public void untrack(UUID uuid) {
+        Tracked tracked = players.remove(uuid);
+        if (tracked != null) tracked.index.remove(tracked.networkId);
+    }
+
+    /**
+     * Recorre todos los jugadores registrados.
+     */
+    public void forEach(Consumer<Player> action) {
+        for (Tracked tracked : players.values()) {
+            action.accept(tracked.player);
+        }
+    }
+
+    /**
+     * Recorre los jugadores registrados en el mundo.
+     */
+    public void forEachInWorld(World world, Consumer<Player> action) {
+        forEachInWorld(world.getName(), action);
+    }
+
+    public void forEachInWorld(String worldName, Consumer<Player> action) {
+        IntSet index = worlds.get(worldName);
+        if (index == null) return;
+        for (Tracked tracked : players.values()) {
+            if (tracked.index == index) action.accept(tracked.player);
+        }
+    }
+
+    private static final class Tracked {
+        final Player player;
+        final IntSet index;
+        final int networkId;
+
+        Tracked(Player player, IntSet index, int networkId) {
+            this.player = player;
+            this.index = index;
+            this.networkId = networkId;
+        }
+    }
+}
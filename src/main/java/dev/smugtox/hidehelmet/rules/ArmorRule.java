@@ -0,0 +1,56 @@
+package dev.smugtox.hidehelmet.rules;
+
+import java.util.regex.Pattern;
+
+/**
+ * Una regla compilada: patron de armorId ('*' = cualquier texto), piezas a las que aplica y
+ * si el item se oculta (hide) o se muestra siempre (show) cuando esa pieza esta oculta.
+ */
+public final class ArmorRule {
+
+    final int slots;
+    final boolean hide;
+
+    private final String exact;
+    private final String prefix;
+    private final Pattern pattern;
+
+    public ArmorRule(String match, int slots, boolean hide) {
+        this.slots = slots & 0x0F;
+        this.hide = hide;
+
+        int star = match.indexOf('*');
+        if (star < 0) {
+            exact = match;
+            prefix = null;
+            pattern = null;
+        } else if (star == match.length() - 1) {
+            exact = null;
+            prefix = match.substring(0, star);
+            pattern = null;
+        } else {
+            exact = null;
+            prefix = null;
+            pattern = Pattern.compile(globToRegex(match));
+        }
+    }
+
+    boolean matches(String armorId) {
+        if (exact != null) return exact.equals(armorId);
+        if (prefix != null) return armorId.startsWith(prefix);
+        return pattern.matcher(armorId).matches();
+    }
+
+    private static String globToRegex(String glob) {
+        StringBuilder out = new StringBuilder();
+        int start = 0;
+        for (int i = 0; i < glob.length(); i++) {
+            if (glob.charAt(i) != '*') continue;
+            if (i > start) out.append(Pattern.quote(glob.substring(start, i)));
+            out.append(".*");
+            start = i + 1;
+        }
+        if (start < glob.length()) out.append(Pattern.quote(glob.substring(start)));
+        return out.toString();
+    }
+}
@@ -0,0 +1,136 @@
+package dev.smugtox.hidehelmet.rules;
+
+import dev.smugtox.hidehelmet.metrics.Metrics;
+
+import java.util.List;
+
+/**
+ * Reglas por armorId compiladas (inmutables) + cache de decisiones por identidad del String.
+ *
+ * Para cada armorId la decision son 4 bits: las piezas en las que ese item se puede ocultar.
+ * En la ruta de packets cuesta una busqueda por identidad por slot; los Strings de armorIds
+ * salen del registro de items, asi que se repiten las mismas instancias.
+ * La cache guarda la instancia de intern(): una instancia distinta del mismo id se resuelve con
+ * intern() y una segunda busqueda (contada en ARMOR_RULE_INTERNED), sin evaluar las reglas otra vez.
+ */
+public final class ArmorRules {
+
+    public static final ArmorRules NONE = new ArmorRules(List.of());
+
+    private static final int ALL_SLOTS = 0x0F;
+    private static final int SLOT_COUNT = 4;
+    private static final int CACHE_SIZE = 4096;
+
+    private static volatile ArmorRules current = NONE;
+
+    private final ArmorRule[] rules;
+    // direct-mapped por identityHashCode; una colision solo pisa la entrada
+    private final Decision[] cache;
+
+    public ArmorRules(List<ArmorRule> rules) {
+        this.rules = rules.toArray(new ArmorRule[0]);
+        this.cache = this.rules.length == 0 ? new Decision[0] : new Decision[CACHE_SIZE];
+    }
+
+    /**
+     * Reglas activas (una lectura volatile).
+     */
+    public static ArmorRules current() {
+        return current;
+    }
+
+    /**
+     * Publica unas reglas nuevas. Antes de publicarlas precalcula los armorIds que ya estaban
+     * en la cache de las anteriores, para que el hilo del mundo no pague el cambio. Llamar fuera del hilo del mundo.
+     */
+    public static void install(ArmorRules rules) {
+        ArmorRules previous = current;
+        for (Decision d : previous.cache) {
+            if (d != null) rules.decision(d.armorId);
+        }
+        current = rules;
+    }
+
+    public boolean isEmpty() {
+        return rules.length == 0;
+    }
+
+    public int size() {
+        return rules.length;
+    }
+
+    /**
+     * Quita de mask las piezas cuyo item no se oculta segun las reglas.
+     */
+    public int filter(String[] armorIds, int mask) {
+        if (rules.length == 0 || armorIds == null) return mask;
+
+        int out = mask;
+        for (int slot = 0; slot < SLOT_COUNT && slot < armorIds.length; slot++) {
+            int bit = 1 << slot;
+            if ((mask & bit) == 0) continue;
+            String id = armorIds[slot];
+            if (id == null || id.isEmpty()) continue;
+            if ((decision(id) & bit) == 0) out &= ~bit;
+        }
+        return out;
+    }
+
+    /**
+     * Piezas en las que este armorId se puede ocultar.
+     */
+    public int decision(String armorId) {
+        int i = index(armorId);
+        Decision d = cache[i];
+        if (d != null && d.armorId == armorId) return d.slots;
+
+        String canonical = armorId.intern();
+        if (canonical != armorId) {
+            i = index(canonical);
+            d = cache[i];
+            if (d != null && d.armorId == canonical) {
+                Metrics.ARMOR_RULE_INTERNED.increment();
+                return d.slots;
+            }
+        }
+
+        int slots = evaluate(canonical);
+        cache[i] = new Decision(canonical, slots);
+        return slots;
+    }
+
+    /**
+     * Para cada pieza decide la primera regla que coincide con el armorId y aplica a esa pieza.
+     * Sin regla que coincida, el item se oculta (comportamiento sin reglas).
+     */
+    private int evaluate(String armorId) {
+        Metrics.ARMOR_RULE_EVALUATIONS.increment();
+        int decided = 0;
+        int hideable = ALL_SLOTS;
+        for (ArmorRule rule : rules) {
+            int slots = rule.slots & ~decided;
+            if (slots == 0 || !rule.matches(armorId)) continue;
+            if (rule.hide) hideable |= slots;
+            else hideable &= ~slots;
+            decided |= slots;
+            if (decided == ALL_SLOTS) break;
+        }
+        return hideable;
+    }
+
+    private int index(String armorId) {
+        int h = System.identityHashCode(armorId);
+        h ^= h >>> 16;
+        return h & (CACHE_SIZE - 1);
+    }
+
+    private static final class Decision {
+        final String armorId;
+        final int slots;
+
+        Decision(String armorId, int slots) {
+            this.armorId = armorId;
+            this.slots = slots;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package dev.smugtox.hidehelmet.rules;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import dev.smugtox.hidehelmet.HideArmorState;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * rules.json: reglas de ocultar / mostrar por armorId, en orden (para cada pieza gana la primera que coincide).
+ *
+ * <pre>
+ * {"rules": [
+ *   {"match": "Armor_Cosmetic_*", "slots": ["head"], "action": "hide"},
+ *   {"match": "*", "slots": ["head"], "action": "show"},
+ *   {"match": "Armor_Guild_Crest_Chest", "action": "show"}
+ * ]}
+ * </pre>
+ */
+public final class RulesFile {
+
+    private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+    private final Path path;
+
+    public RulesFile(Path path) {
+        this.path = path;
+    }
+
+    public boolean exists() {
+        return Files.exists(path);
+    }
+
+    public void writeSeed() throws IOException {
+        Files.writeString(path, "{\"rules\":[]}", StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Lee y compila las reglas. Las reglas invalidas se saltan con un aviso.
+     */
+    public ArmorRules load() throws IOException {
+        if (!exists()) return ArmorRules.NONE;
+
+        String json = Files.readString(path, StandardCharsets.UTF_8);
+        RulesModel model = gson.fromJson(json, RulesModel.class);
+        if (model == null || model.rules == null || model.rules.isEmpty()) return ArmorRules.NONE;
+
+        List<ArmorRule> compiled = new ArrayList<>(model.rules.size());
+        for (RuleModel rule : model.rules) {
+            if (rule == null || rule.match == null || rule.match.isEmpty()) {
+                System.err.println("HideHelmet: Skipping rule without match in rules.json");
+                continue;
+            }
+            String action = rule.action == null ? "hide" : rule.action.toLowerCase(Locale.ROOT);
+            if (!"hide".equals(action) && !"show".equals(action)) {
+                System.err.println("HideHelmet: Skipping rule with unknown action: " + rule.action);
+                continue;
+            }
+            int slots = parseSlots(rule.slots);
+            if (slots < 0) {
+                System.err.println("HideHelmet: Skipping rule with unknown slot: " + rule.slots);
+                continue;
+            }
+            compiled.add(new ArmorRule(rule.match, slots, "hide".equals(action)));
+        }
+        return compiled.isEmpty() ? ArmorRules.NONE : new ArmorRules(compiled);
+    }
+
+    /**
+     * @return mascara de piezas (todas si no hay lista), o -1 si hay un nombre desconocido
+     */
+    private static int parseSlots(List<String> names) {
+        if (names == null || names.isEmpty()) return 0x0F;
+        int slots = 0;
+        for (String name : names) {
+            int slot = switch (name == null ? "" : name.toLowerCase(Locale.ROOT)) {
+                case "head" -> HideArmorState.SLOT_HEAD;
+                case "chest" -> HideArmorState.SLOT_CHEST;
+                case "hands" -> HideArmorState.SLOT_HANDS;
+                case "legs" -> HideArmorState.SLOT_LEGS;
+                default -> -1;
+            };
+            if (slot < 0) return -1;
+            slots |= 1 << slot;
+        }
+        return slots;
+    }
+
+    private static final class RulesModel {
+        List<RuleModel> rules;
+    }
+
+    private static final class RuleModel {
+        String match;
+        List<String> slots;
+        String action;
+    }
+}
@@ -0,0 +1,103 @@
+package dev.smugtox.hidehelmet.storage;
+
+import com.google.gson.Gson;
+import dev.smugtox.hidehelmet.HideArmorState;
+import dev.smugtox.hidehelmet.config.PluginConfig;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * players.json (formato antiguo): mascaras por jugador + bloque de config.
+ * Solo se lee para migrar: las mascaras a MaskJournal y la config a config.json.
+ */
+public final class JsonStateFile {
+
+    private static final int MAX_MASK = 15;
+
+    private final Gson gson = new Gson();
+    private final Path path;
+
+    public JsonStateFile(Path path) {
+        this.path = path;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public boolean exists() {
+        return Files.exists(path);
+    }
+
+    /**
+     * Lee solo el bloque de config, o null si no hay.
+     */
+    public PluginConfig loadConfig() throws IOException {
+        if (!exists()) return null;
+
+        String json = Files.readString(path, StandardCharsets.UTF_8);
+        SaveModel model = gson.fromJson(json, SaveModel.class);
+        return model != null ? model.config : null;
+    }
+
+    /**
+     * True si el fichero aun tiene jugadores (formato anterior al journal).
+     */
+    public boolean hasPlayers() throws IOException {
+        if (!exists()) return false;
+
+        String json = Files.readString(path, StandardCharsets.UTF_8);
+        SaveModel model = gson.fromJson(json, SaveModel.class);
+        return model != null && model.players != null && !model.players.isEmpty();
+    }
+
+    /**
+     * Renombra el fichero a players.json.migrated cuando ya no queda nada que migrar.
+     */
+    public void retire() throws IOException {
+        if (!exists()) return;
+        Files.move(path, path.resolveSibling(path.getFileName() + ".migrated"), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Entrega las mascaras != 0 del fichero al visitor, sin tocar HideArmorState.
+     * @return jugadores leidos
+     */
+    public int readPlayers(HideArmorState.MaskVisitor visitor) throws IOException {
+        if (!exists()) return 0;
+
+        String json = Files.readString(path, StandardCharsets.UTF_8);
+        SaveModel model = gson.fromJson(json, SaveModel.class);
+        if (model == null) return 0;
+        if (model.players == null) return 0;
+
+        int loaded = 0;
+        for (Map.Entry<String, Integer> entry : model.players.entrySet()) {
+            Integer mask = entry.getValue();
+            if (mask == null) continue;
+
+            int clamped = Math.max(0, Math.min(MAX_MASK, mask));
+            if (clamped == 0) continue;
+
+            try {
+                UUID uuid = UUID.fromString(entry.getKey());
+                visitor.accept(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), clamped);
+                loaded++;
+            } catch (IllegalArgumentException ignored) {
+            }
+        }
+        return loaded;
+    }
+
+    private static final class SaveModel {
+        Map<String, Integer> players = new HashMap<>();
+        PluginConfig config;
+    }
+}
@@ -0,0 +1,63 @@
+package dev.smugtox.hidehelmet.storage;
+
+import dev.smugtox.hidehelmet.HideArmorState;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Backend de un solo servidor: snapshot + journal en el directorio del plugin.
+ * Los lookups se resuelven en el hilo que llama (una busqueda binaria en el snapshot).
+ */
+public final class LocalStateBackend implements StateBackend {
+
+    private final MaskJournal journal;
+
+    public LocalStateBackend(Path dir) {
+        this(dir, MaskJournal.DEFAULT_MIN_COMPACT_BYTES);
+    }
+
+    public LocalStateBackend(Path dir, long minCompactBytes) {
+        this.journal = new MaskJournal(dir, minCompactBytes);
+    }
+
+    public MaskJournal getJournal() {
+        return journal;
+    }
+
+    @Override
+    public long open() throws IOException {
+        return journal.open();
+    }
+
+    @Override
+    public CompletableFuture<Integer> get(UUID uuid) {
+        try {
+            return CompletableFuture.completedFuture(journal.lookup(uuid));
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @Override
+    public void putAll(MaskBatch batch) throws IOException {
+        journal.append(batch);
+    }
+
+    @Override
+    public void flush() {
+        // append ya hace force
+    }
+
+    @Override
+    public void subscribe(HideArmorState.MaskVisitor listener) {
+        // un solo nodo: nadie mas escribe
+    }
+
+    @Override
+    public void close() throws IOException {
+        journal.close();
+    }
+}
@@ -0,0 +1,80 @@
+package dev.smugtox.hidehelmet.storage;
+
+import dev.smugtox.hidehelmet.HideArmorState;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Lote de cambios de mascara ya codificados como registros de 17 bytes (uuid msb, uuid lsb, mascara).
+ * Es el mismo formato del journal y del protocolo remoto, asi que se escribe sin convertir.
+ * Si un jugador aparece varias veces, el ultimo registro gana.
+ */
+public final class MaskBatch {
+
+    public static final int RECORD_BYTES = 17;
+
+    private byte[] data = new byte[RECORD_BYTES * 256];
+    private int size;
+
+    public void add(long msb, long lsb, int mask) {
+        ensure(RECORD_BYTES);
+        putLong(msb);
+        putLong(lsb);
+        data[size++] = (byte) mask;
+    }
+
+    /**
+     * @return registros en el lote
+     */
+    public int size() {
+        return size / RECORD_BYTES;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void forEach(HideArmorState.MaskVisitor visitor) {
+        ByteBuffer view = ByteBuffer.wrap(data, 0, size);
+        for (int p = 0; p + RECORD_BYTES <= size; p += RECORD_BYTES) {
+            visitor.accept(view.getLong(p), view.getLong(p + 8), data[p + 16] & 0x0F);
+        }
+    }
+
+    public void writeTo(DataOutput out) throws IOException {
+        out.write(data, 0, size);
+    }
+
+    public static MaskBatch readFrom(DataInput in, int records) throws IOException {
+        MaskBatch batch = new MaskBatch();
+        int bytes = records * RECORD_BYTES;
+        batch.ensure(bytes);
+        in.readFully(batch.data, 0, bytes);
+        batch.size = bytes;
+        return batch;
+    }
+
+    /**
+     * Vista de solo lectura de los registros, para escribirlos en un canal.
+     */
+    ByteBuffer buffer() {
+        return ByteBuffer.wrap(data, 0, size).asReadOnlyBuffer();
+    }
+
+    private void ensure(int extra) {
+        if (size + extra > data.length) {
+            byte[] grown = new byte[Math.max(data.length * 2, size + extra)];
+            System.arraycopy(data, 0, grown, 0, size);
+            data = grown;
+        }
+    }
+
+    private void putLong(long v) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            data[size++] = (byte) (v >>> shift);
+        }
+    }
+}
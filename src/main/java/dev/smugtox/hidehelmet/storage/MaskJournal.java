@@ -0,0 +1,503 @@
+package dev.smugtox.hidehelmet.storage;
+
+import dev.smugtox.hidehelmet.MaskTable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Persistencia binaria de mascaras: un snapshot ordenado por UUID mas un journal de solo-append.
+ *
+ * Ambos ficheros son una cabecera de 16 bytes (magic, version, generacion) seguida de
+ * registros fijos de 17 bytes (uuid msb, uuid lsb, mascara). El snapshot esta ordenado, asi que
+ * un jugador se busca con una busqueda binaria sobre el fichero sin cargarlo. El contenido del
+ * journal se mantiene en memoria (overlay) hasta la siguiente compactacion.
+ *
+ * Cada commit escribe solo los jugadores que cambiaron y hace un unico force. Cuando el journal
+ * crece demasiado se compacta en segundo plano: se rota el journal, se mezcla el snapshot con el
+ * overlay en un temporal y se renombra de forma atomica. La generacion decide que journals
+ * siguen siendo validos tras un crash.
+ */
+public final class MaskJournal implements Closeable {
+
+    private static final int RECORD_BYTES = MaskBatch.RECORD_BYTES;
+    private static final int HEADER_BYTES = 16;
+    private static final int JOURNAL_MAGIC = 0x48484A31; // "HHJ1"
+    private static final int SNAPSHOT_MAGIC = 0x48485332; // "HHS2": ordenado
+    private static final int VERSION = 1;
+    public static final long DEFAULT_MIN_COMPACT_BYTES = 1L << 20;
+
+    private final Path snapshotPath;
+    private final Path journalPath;
+    private final Path oldJournalPath;
+    private final Path tmpSnapshotPath;
+    // el journal se compacta al pasar de este tamano o de 1/8 del snapshot, lo que sea mayor
+    private final long minCompactBytes;
+
+    private final Object journalLock = new Object();
+    private FileChannel journal;  // protegido por journalLock
+    private long generation;      // protegido por journalLock
+
+    // Indice para lookups; los cambios de referencia se hacen con el write lock
+    private final ReentrantReadWriteLock indexLock = new ReentrantReadWriteLock();
+    private volatile MaskTable overlay = new MaskTable(); // journal actual
+    private MaskTable frozen;                              // journal rotado, mientras se compacta
+    private FileChannel snapshot;
+    private long snapshotRecords;
+
+    private final AtomicBoolean compacting = new AtomicBoolean();
+    private final ExecutorService compactExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "HideHelmet-Compact");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public MaskJournal(Path dir) {
+        this(dir, DEFAULT_MIN_COMPACT_BYTES);
+    }
+
+    public MaskJournal(Path dir, long minCompactBytes) {
+        this.minCompactBytes = Math.max(RECORD_BYTES, minCompactBytes);
+        this.snapshotPath = dir.resolve("players.snapshot");
+        this.journalPath = dir.resolve("players.journal");
+        this.oldJournalPath = dir.resolve("players.journal.old");
+        this.tmpSnapshotPath = dir.resolve("players.snapshot.tmp");
+    }
+
+    public boolean exists() {
+        return Files.exists(snapshotPath) || Files.exists(journalPath);
+    }
+
+    /**
+     * Abre el snapshot y carga los journals validos en el overlay. No carga jugadores en HideArmorState.
+     * @return registros en disco (snapshot + journal)
+     */
+    public long open() throws IOException {
+        synchronized (journalLock) {
+            long gen = 0;
+            if (Files.exists(snapshotPath)) {
+                gen = readHeader(snapshotPath, SNAPSHOT_MAGIC);
+                snapshot = FileChannel.open(snapshotPath, StandardOpenOption.READ);
+                snapshotRecords = (snapshot.size() - HEADER_BYTES) / RECORD_BYTES;
+            }
+
+            MaskTable table = new MaskTable();
+            if (Files.exists(oldJournalPath)) {
+                // compactacion interrumpida antes de escribir el snapshot nuevo
+                replay(oldJournalPath, gen, table);
+            }
+
+            long journalGen = -1;
+            if (Files.exists(journalPath)) {
+                journalGen = replay(journalPath, gen, table);
+            }
+            overlay = table;
+
+            if (journalGen >= gen) {
+                generation = journalGen;
+                journal = FileChannel.open(journalPath, StandardOpenOption.WRITE);
+                // descarta un registro a medias del final (crash durante un append)
+                long size = journal.size();
+                long valid = HEADER_BYTES + ((size - HEADER_BYTES) / RECORD_BYTES) * RECORD_BYTES;
+                if (valid != size) journal.truncate(valid);
+                journal.position(valid);
+            } else {
+                generation = gen;
+                journal = openNew(journalPath, generation);
+            }
+            return snapshotRecords + table.size();
+        }
+    }
+
+    /**
+     * Registros en disco (snapshot + journal); un jugador cambiado despues del snapshot cuenta dos veces.
+     */
+    public long size() {
+        indexLock.readLock().lock();
+        try {
+            return snapshotRecords + overlay.size() + (frozen == null ? 0 : frozen.size());
+        } finally {
+            indexLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Mascara guardada de un jugador (0 si no hay). Lee del overlay o busca en el snapshot.
+     */
+    public int lookup(UUID uuid) throws IOException {
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+
+        indexLock.readLock().lock();
+        try {
+            int mask = overlay.find(msb, lsb);
+            if (mask >= 0) return mask;
+            if (frozen != null) {
+                mask = frozen.find(msb, lsb);
+                if (mask >= 0) return mask;
+            }
+            return snapshot == null ? 0 : search(snapshot, snapshotRecords, msb, lsb);
+        } finally {
+            indexLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Anade un lote al journal con un unico force (group commit).
+     * Si falla, el journal queda como estaba y el lote se puede reintentar.
+     * @return registros escritos
+     */
+    public int append(MaskBatch batch) throws IOException {
+        if (batch.isEmpty()) return 0;
+
+        boolean compact;
+        synchronized (journalLock) {
+            if (journal == null) throw new IOException("journal not open");
+
+            ByteBuffer bytes = batch.buffer();
+            long start = journal.position();
+            try {
+                while (bytes.hasRemaining()) journal.write(bytes);
+                journal.force(false);
+            } catch (IOException e) {
+                // deja el journal como estaba
+                journal.truncate(start);
+                journal.position(start);
+                throw e;
+            }
+
+            MaskTable table = overlay;
+            batch.forEach((msb, lsb, mask) -> table.put(msb, lsb, mask, true));
+            compact = shouldCompact();
+        }
+
+        if (compact) compactInBackground();
+        return batch.size();
+    }
+
+    public void compactInBackground() {
+        compactExecutor.execute(() -> {
+            try {
+                compact();
+            } catch (Exception e) {
+                System.err.println("HideHelmet: Failed to compact journal: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Mezcla el snapshot con el journal en un snapshot nuevo y descarta el journal anterior.
+     * Solo se bloquea el journal mientras se rota; la mezcla se escribe sin locks.
+     * @return registros en el snapshot nuevo
+     */
+    public long compact() throws IOException {
+        if (!compacting.compareAndSet(false, true)) return 0;
+        try {
+            long gen;
+            MaskTable toMerge;
+            synchronized (journalLock) {
+                if (journal == null) throw new IOException("journal not open");
+                // Si quedo un .old de una compactacion fallida, su contenido ya esta en el overlay
+                if (!Files.exists(oldJournalPath)) {
+                    journal.force(true);
+                    journal.close();
+                    Files.move(journalPath, oldJournalPath, StandardCopyOption.ATOMIC_MOVE);
+                    generation++;
+                    journal = openNew(journalPath, generation);
+                }
+                gen = generation;
+
+                indexLock.writeLock().lock();
+                try {
+                    toMerge = overlay;
+                    frozen = toMerge;
+                    overlay = new MaskTable();
+                } finally {
+                    indexLock.writeLock().unlock();
+                }
+            }
+
+            SortedRecords records = SortedRecords.of(toMerge);
+            try {
+                long count = writeMergedSnapshot(gen, records);
+                Files.deleteIfExists(oldJournalPath);
+                return count;
+            } catch (IOException | RuntimeException e) {
+                // devolvemos lo congelado al overlay (lo nuevo gana) para no perder lookups
+                indexLock.writeLock().lock();
+                try {
+                    MaskTable current = overlay;
+                    for (int i = 0; i < records.size; i++) {
+                        if (current.find(records.msb[i], records.lsb[i]) < 0) {
+                            current.put(records.msb[i], records.lsb[i], records.mask[i], true);
+                        }
+                    }
+                    frozen = null;
+                } finally {
+                    indexLock.writeLock().unlock();
+                }
+                throw e;
+            }
+        } finally {
+            compacting.set(false);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        compactExecutor.shutdown();
+        try {
+            // una compactacion a medias es segura, pero mejor dejar el snapshot escrito
+            compactExecutor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (journalLock) {
+            if (journal != null) {
+                journal.close();
+                journal = null;
+            }
+        }
+        indexLock.writeLock().lock();
+        try {
+            if (snapshot != null) {
+                snapshot.close();
+                snapshot = null;
+            }
+        } finally {
+            indexLock.writeLock().unlock();
+        }
+    }
+
+    // Llamar con journalLock
+    private boolean shouldCompact() throws IOException {
+        long snapshotBytes = snapshotRecords * RECORD_BYTES;
+        return journal.size() > Math.max(minCompactBytes, snapshotBytes / 8);
+    }
+
+    /**
+     * Mezcla ordenada del snapshot actual con los registros del journal; una mascara 0 borra al jugador.
+     */
+    private long writeMergedSnapshot(long gen, SortedRecords records) throws IOException {
+        long count = 0;
+        try (OutputStream raw = Files.newOutputStream(tmpSnapshotPath);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(raw, 1 << 16))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(gen);
+
+            int r = 0;
+            if (Files.exists(snapshotPath)) {
+                try (InputStream rawIn = Files.newInputStream(snapshotPath);
+                     DataInputStream in = new DataInputStream(new BufferedInputStream(rawIn, 1 << 16))) {
+                    in.skipNBytes(HEADER_BYTES);
+                    while (true) {
+                        long msb;
+                        long lsb;
+                        int mask;
+                        try {
+                            msb = in.readLong();
+                            lsb = in.readLong();
+                            mask = in.readUnsignedByte();
+                        } catch (EOFException e) {
+                            break;
+                        }
+
+                        // registros del journal que van antes
+                        while (r < records.size && compare(records.msb[r], records.lsb[r], msb, lsb) < 0) {
+                            count += write(out, records.msb[r], records.lsb[r], records.mask[r]);
+                            r++;
+                        }
+                        if (r < records.size && records.msb[r] == msb && records.lsb[r] == lsb) {
+                            mask = records.mask[r]; // el journal es mas nuevo
+                            r++;
+                        }
+                        count += write(out, msb, lsb, mask);
+                    }
+                }
+            }
+            for (; r < records.size; r++) {
+                count += write(out, records.msb[r], records.lsb[r], records.mask[r]);
+            }
+        }
+
+        try (FileChannel ch = FileChannel.open(tmpSnapshotPath, StandardOpenOption.WRITE)) {
+            ch.force(true);
+        }
+
+        indexLock.writeLock().lock();
+        try {
+            if (snapshot != null) snapshot.close();
+            Files.move(tmpSnapshotPath, snapshotPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            snapshot = FileChannel.open(snapshotPath, StandardOpenOption.READ);
+            snapshotRecords = count;
+            frozen = null;
+        } finally {
+            indexLock.writeLock().unlock();
+        }
+        return count;
+    }
+
+    private static int write(DataOutputStream out, long msb, long lsb, int mask) throws IOException {
+        if (mask == 0) return 0;
+        out.writeLong(msb);
+        out.writeLong(lsb);
+        out.writeByte(mask);
+        return 1;
+    }
+
+    private static int compare(long msb1, long lsb1, long msb2, long lsb2) {
+        int c = Long.compare(msb1, msb2);
+        return c != 0 ? c : Long.compare(lsb1, lsb2);
+    }
+
+    private static int search(FileChannel channel, long records, long msb, long lsb) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES);
+        long lo = 0;
+        long hi = records - 1;
+        while (lo <= hi) {
+            long mid = (lo + hi) >>> 1;
+            record.clear();
+            long pos = HEADER_BYTES + mid * RECORD_BYTES;
+            while (record.hasRemaining()) {
+                if (channel.read(record, pos + record.position()) < 0) throw new EOFException();
+            }
+            int c = compare(record.getLong(0), record.getLong(8), msb, lsb);
+            if (c == 0) return record.get(16) & 0x0F;
+            if (c < 0) lo = mid + 1;
+            else hi = mid - 1;
+        }
+        return 0;
+    }
+
+    private static FileChannel openNew(Path path, long gen) throws IOException {
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(JOURNAL_MAGIC).putInt(VERSION).putLong(gen).flip();
+        while (header.hasRemaining()) channel.write(header);
+        channel.force(true);
+        return channel;
+    }
+
+    private static long readHeader(Path path, int magic) throws IOException {
+        try (InputStream raw = Files.newInputStream(path);
+             DataInputStream in = new DataInputStream(raw)) {
+            if (in.readInt() != magic) throw new IOException("bad header in " + path.getFileName());
+            if (in.readInt() != VERSION) throw new IOException("unsupported version in " + path.getFileName());
+            return in.readLong();
+        }
+    }
+
+    /**
+     * Aplica los registros del journal a la tabla si su generacion es >= minGeneration.
+     * @return la generacion del fichero, o -1 si se ignoro
+     */
+    private static long replay(Path path, long minGeneration, MaskTable table) throws IOException {
+        try (InputStream raw = Files.newInputStream(path);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(raw, 1 << 16))) {
+            long gen;
+            try {
+                if (in.readInt() != JOURNAL_MAGIC) throw new IOException("bad header in " + path.getFileName());
+                if (in.readInt() != VERSION) throw new IOException("unsupported version in " + path.getFileName());
+                gen = in.readLong();
+            } catch (EOFException e) {
+                return -1;
+            }
+            if (gen < minGeneration) return -1;
+
+            while (true) {
+                try {
+                    long msb = in.readLong();
+                    long lsb = in.readLong();
+                    table.put(msb, lsb, in.readUnsignedByte(), true);
+                } catch (EOFException e) {
+                    break; // registro a medias al final
+                }
+            }
+            return gen;
+        }
+    }
+
+    /**
+     * Registros del journal ordenados por UUID, en arrays paralelos (sin objetos por registro).
+     */
+    private static final class SortedRecords {
+        long[] msb = new long[64];
+        long[] lsb = new long[64];
+        byte[] mask = new byte[64];
+        int size;
+
+        static SortedRecords of(MaskTable table) {
+            SortedRecords records = new SortedRecords();
+            // todas las entradas del overlay son dirty: drainDirty las entrega incluidas las de mascara 0.
+            // La tabla ya esta congelada, asi que limpiar la marca no afecta a los lookups
+            table.drainDirty(records::add);
+            records.sort(0, records.size - 1);
+            return records;
+        }
+
+        void add(long m, long l, int v) {
+            if (size == msb.length) {
+                int cap = size * 2;
+                msb = java.util.Arrays.copyOf(msb, cap);
+                lsb = java.util.Arrays.copyOf(lsb, cap);
+                mask = java.util.Arrays.copyOf(mask, cap);
+            }
+            msb[size] = m;
+            lsb[size] = l;
+            mask[size] = (byte) v;
+            size++;
+        }
+
+        private void sort(int lo, int hi) {
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                long pm = msb[mid];
+                long pl = lsb[mid];
+                int i = lo;
+                int j = hi;
+                while (i <= j) {
+                    while (compare(msb[i], lsb[i], pm, pl) < 0) i++;
+                    while (compare(msb[j], lsb[j], pm, pl) > 0) j--;
+                    if (i <= j) {
+                        swap(i++, j--);
+                    }
+                }
+                // recursion en la parte pequena para acotar la pila
+                if (j - lo < hi - i) {
+                    sort(lo, j);
+                    lo = i;
+                } else {
+                    sort(i, hi);
+                    hi = j;
+                }
+            }
+        }
+
+        private void swap(int a, int b) {
+            long t = msb[a]; msb[a] = msb[b]; msb[b] = t;
+            t = lsb[a]; lsb[a] = lsb[b]; lsb[b] = t;
+            byte v = mask[a]; mask[a] = mask[b]; mask[b] = v;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package dev.smugtox.hidehelmet.storage;
+
+import dev.smugtox.hidehelmet.HideArmorState;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Donde se guardan las mascaras de los jugadores. HideArmorState solo tiene a los jugadores online;
+ * el backend tiene a todos.
+ *
+ * Implementaciones: {@link LocalStateBackend} (fichero local de este servidor) y
+ * {@link dev.smugtox.hidehelmet.storage.remote.RemoteStateBackend} (compartido entre varios nodos).
+ */
+public interface StateBackend extends Closeable {
+
+    /**
+     * Prepara el backend. No carga jugadores en HideArmorState.
+     * @return jugadores guardados (0 si el store esta vacio)
+     */
+    long open() throws IOException;
+
+    /**
+     * Mascara guardada de un jugador (0 si no hay). Puede completarse en otro hilo.
+     */
+    CompletableFuture<Integer> get(UUID uuid);
+
+    /**
+     * Guarda un lote de cambios. Si lanza excepcion, el lote no se guardo y hay que reintentarlo.
+     */
+    void putAll(MaskBatch batch) throws IOException;
+
+    /**
+     * Espera a que todo lo aceptado por putAll este guardado.
+     */
+    void flush() throws IOException;
+
+    /**
+     * Avisa de cambios hechos por otros nodos. Se llama desde un hilo del backend.
+     */
+    void subscribe(HideArmorState.MaskVisitor listener);
+}
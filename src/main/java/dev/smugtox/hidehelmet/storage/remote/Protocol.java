@@ -0,0 +1,22 @@
+package dev.smugtox.hidehelmet.storage.remote;
+
+/**
+ * Protocolo binario entre RemoteStateBackend y StateServer, sobre una conexion TCP por nodo.
+ *
+ * Peticion: op (byte), id (int), datos. Respuesta: el mismo op e id, y el resultado (long).
+ * Los cambios que hace un nodo se reenvian a los demas como CHANGES: op, numero de registros (int)
+ * y los registros de MaskBatch. CHANGES no lleva id ni respuesta.
+ */
+final class Protocol {
+
+    static final int MAGIC = 0x48484E31; // "HHN1", lo primero que envia el cliente
+
+    static final byte HELLO = 1;   // -> jugadores guardados
+    static final byte GET = 2;     // msb, lsb -> mascara
+    static final byte PUT = 3;     // registros (int), lote -> registros guardados
+    static final byte CHANGES = 4; // solo servidor -> cliente
+
+    static final int MAX_BATCH_RECORDS = 1 << 20;
+
+    private Protocol() {}
+}
@@ -0,0 +1,393 @@
+package dev.smugtox.hidehelmet.storage.remote;
+
+import dev.smugtox.hidehelmet.HideArmorState;
+import dev.smugtox.hidehelmet.MaskTable;
+import dev.smugtox.hidehelmet.storage.MaskBatch;
+import dev.smugtox.hidehelmet.storage.StateBackend;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Backend compartido entre varios nodos a traves de un StateServer.
+ *
+ * Escrituras write-behind: putAll solo deja los cambios en un buffer en memoria (el ultimo valor de
+ * cada jugador gana) y un hilo los envia en un unico PUT cada flushIntervalMs, o antes si se acumulan.
+ * Las lecturas pasan primero por el buffer y por una near-cache de los jugadores vistos en este nodo,
+ * que se mantiene al dia con los CHANGES que reenvia el servidor.
+ *
+ * La conexion la abre un hilo propio (con backoff si el servidor no esta), nunca quien envia:
+ * sin conexion, send falla al momento y el guardado o la carga no se quedan bloqueados en un connect.
+ */
+public final class RemoteStateBackend implements StateBackend {
+
+    private static final int CONNECT_TIMEOUT_MS = 2000;
+    private static final long REQUEST_TIMEOUT_MS = 2000;
+    private static final int NEAR_CACHE_SIZE = 4096;
+    public static final int DEFAULT_FLUSH_RECORDS = 1024;
+    private static final long MIN_RECONNECT_MS = 100;
+    private static final long MAX_RECONNECT_MS = 5000;
+
+    private final InetSocketAddress address;
+    private final long flushIntervalMs;
+    private final int flushRecords; // cambios en el buffer que adelantan el PUT
+
+    // Conexion actual; la abre y reabre el hilo de reconexion. El lock solo cubre el cambio y las escrituras
+    private final Object connectLock = new Object();
+    private Socket socket;        // protegido por connectLock
+    private DataOutputStream out; // protegido por connectLock
+    private boolean closed;       // protegido por connectLock
+    private final AtomicBoolean reconnecting = new AtomicBoolean();
+    private long reconnectDelayMs = MIN_RECONNECT_MS; // solo lo usa quien puso reconnecting a true
+
+    private final AtomicInteger nextId = new AtomicInteger();
+    private final Map<Integer, CompletableFuture<Long>> inflight = new ConcurrentHashMap<>();
+    private final List<HideArmorState.MaskVisitor> listeners = new CopyOnWriteArrayList<>();
+
+    // Write-behind: cambios aun no enviados y el lote en vuelo (para que get los vea)
+    private final Object bufferLock = new Object();
+    private MaskTable writeBuffer = new MaskTable(); // protegido por bufferLock
+    private MaskTable sending;                      // protegido por bufferLock
+    private int buffered;                           // protegido por bufferLock
+    private final Object flushLock = new Object();
+    private boolean flushFailing;                   // protegido por flushLock, para no repetir el log
+
+    private final Map<UUID, Integer> nearCache = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<UUID, Integer> eldest) {
+            return size() > NEAR_CACHE_SIZE;
+        }
+    };
+
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "HideHelmet-WriteBehind");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final ScheduledExecutorService reconnector = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "HideHelmet-Reconnect");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public RemoteStateBackend(String host, int port, long flushIntervalMs) {
+        this(host, port, flushIntervalMs, DEFAULT_FLUSH_RECORDS);
+    }
+
+    public RemoteStateBackend(String host, int port, long flushIntervalMs, int flushRecords) {
+        this.address = new InetSocketAddress(host, port);
+        this.flushIntervalMs = Math.max(10, flushIntervalMs);
+        this.flushRecords = Math.max(1, Math.min(Protocol.MAX_BATCH_RECORDS, flushRecords));
+    }
+
+    @Override
+    public long open() throws IOException {
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        // Primer intento aqui (arranque); si el servidor no esta, los cambios se quedan en el buffer
+        // y el hilo de reconexion sigue probando
+        reconnecting.set(true);
+        reconnect();
+        return await(send(Protocol.HELLO, o -> {}));
+    }
+
+    @Override
+    public CompletableFuture<Integer> get(UUID uuid) {
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+
+        synchronized (bufferLock) {
+            int mask = writeBuffer.find(msb, lsb);
+            if (mask < 0 && sending != null) mask = sending.find(msb, lsb);
+            if (mask >= 0) return CompletableFuture.completedFuture(mask);
+        }
+
+        Integer cached;
+        synchronized (nearCache) {
+            cached = nearCache.get(uuid);
+        }
+        if (cached != null) return CompletableFuture.completedFuture(cached);
+
+        return send(Protocol.GET, o -> {
+            o.writeLong(msb);
+            o.writeLong(lsb);
+        }).thenApply(result -> {
+            int mask = (int) (long) result;
+            synchronized (nearCache) {
+                // una escritura local posterior a la peticion es mas nueva
+                nearCache.putIfAbsent(uuid, mask);
+            }
+            return mask;
+        });
+    }
+
+    @Override
+    public void putAll(MaskBatch batch) {
+        if (batch.isEmpty()) return;
+
+        boolean flushNow;
+        synchronized (bufferLock) {
+            MaskTable buffer = writeBuffer;
+            batch.forEach((msb, lsb, mask) -> buffer.put(msb, lsb, mask, true));
+            buffered += batch.size();
+            flushNow = buffered >= flushRecords;
+        }
+        synchronized (nearCache) {
+            batch.forEach((msb, lsb, mask) -> nearCache.put(new UUID(msb, lsb), mask));
+        }
+
+        if (flushNow) flusher.execute(this::flushQuietly);
+    }
+
+    /**
+     * Envia todo lo pendiente y espera a que el servidor lo confirme.
+     */
+    @Override
+    public void flush() throws IOException {
+        synchronized (flushLock) {
+            MaskTable toSend;
+            synchronized (bufferLock) {
+                if (buffered == 0) return;
+                toSend = writeBuffer;
+                sending = toSend;
+                writeBuffer = new MaskTable();
+                buffered = 0;
+            }
+
+            MaskBatch batch = new MaskBatch();
+            toSend.drainDirty(batch::add);
+            try {
+                await(send(Protocol.PUT, o -> {
+                    o.writeInt(batch.size());
+                    batch.writeTo(o);
+                }));
+            } catch (IOException e) {
+                // vuelve al buffer para el siguiente flush; lo escrito mientras tanto gana
+                synchronized (bufferLock) {
+                    MaskTable current = writeBuffer;
+                    batch.forEach((msb, lsb, mask) -> {
+                        if (current.find(msb, lsb) < 0) {
+                            current.put(msb, lsb, mask, true);
+                            buffered++;
+                        }
+                    });
+                    sending = null;
+                }
+                throw e;
+            }
+
+            synchronized (bufferLock) {
+                sending = null;
+            }
+        }
+    }
+
+    @Override
+    public void subscribe(HideArmorState.MaskVisitor listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void close() throws IOException {
+        flusher.shutdown();
+        try {
+            flush();
+        } finally {
+            reconnector.shutdownNow();
+            synchronized (connectLock) {
+                closed = true;
+                disconnect(socket);
+            }
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+            synchronized (flushLock) {
+                flushFailing = false;
+            }
+        } catch (IOException e) {
+            synchronized (flushLock) {
+                if (flushFailing) return;
+                flushFailing = true;
+            }
+            System.err.println("HideHelmet: Failed to send state to " + address + ": " + e.getMessage());
+        }
+    }
+
+    private CompletableFuture<Long> send(byte op, Payload payload) {
+        int id = nextId.incrementAndGet();
+        CompletableFuture<Long> reply = new CompletableFuture<>();
+        inflight.put(id, reply);
+
+        synchronized (connectLock) {
+            DataOutputStream o = out;
+            if (o == null) {
+                // sin conexion no se espera a un connect: quien llama usa el buffer / near-cache
+                inflight.remove(id);
+                scheduleReconnect();
+                reply.completeExceptionally(new IOException("not connected to " + address));
+                return reply;
+            }
+            try {
+                o.writeByte(op);
+                o.writeInt(id);
+                payload.write(o);
+                o.flush();
+            } catch (IOException e) {
+                inflight.remove(id);
+                disconnect(socket);
+                reply.completeExceptionally(e);
+                return reply;
+            }
+        }
+
+        reply.orTimeout(REQUEST_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        return reply.whenComplete((result, error) -> inflight.remove(id));
+    }
+
+    private void scheduleReconnect() {
+        if (!reconnecting.compareAndSet(false, true)) return;
+        try {
+            reconnector.execute(this::reconnect);
+        } catch (RejectedExecutionException e) {
+            reconnecting.set(false); // cerrando
+        }
+    }
+
+    /**
+     * Abre la conexion sin tener connectLock (el connect puede tardar CONNECT_TIMEOUT_MS);
+     * si falla, se reprograma con un backoff que se dobla hasta MAX_RECONNECT_MS.
+     */
+    private void reconnect() {
+        Socket s = new Socket();
+        try {
+            s.connect(address, CONNECT_TIMEOUT_MS);
+            s.setTcpNoDelay(true);
+            DataOutputStream o = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+            o.writeInt(Protocol.MAGIC);
+            o.flush();
+            DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+
+            synchronized (connectLock) {
+                if (closed) {
+                    s.close();
+                    return;
+                }
+                socket = s;
+                out = o;
+            }
+            // Mientras estuvimos desconectados pudimos perder CHANGES
+            synchronized (nearCache) {
+                nearCache.clear();
+            }
+
+            reconnectDelayMs = MIN_RECONNECT_MS;
+            reconnecting.set(false); // antes del lector: si la conexion cae ya, hay que poder reprogramar
+
+            Thread reader = new Thread(() -> readLoop(s, in), "HideHelmet-Remote");
+            reader.setDaemon(true);
+            reader.start();
+        } catch (IOException e) {
+            try {
+                s.close();
+            } catch (IOException ignored) {
+            }
+            long delay = reconnectDelayMs;
+            reconnectDelayMs = Math.min(MAX_RECONNECT_MS, delay * 2);
+            try {
+                reconnector.schedule(this::reconnect, delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException closing) {
+                reconnecting.set(false);
+            }
+        }
+    }
+
+    // Llamar con connectLock
+    private void disconnect(Socket s) {
+        if (s == null || s != socket) return;
+        socket = null;
+        out = null;
+        try {
+            s.close();
+        } catch (IOException ignored) {
+        }
+        IOException lost = new IOException("connection to " + address + " closed");
+        for (CompletableFuture<Long> reply : inflight.values()) {
+            reply.completeExceptionally(lost);
+        }
+        if (!closed) scheduleReconnect();
+    }
+
+    private void readLoop(Socket s, DataInputStream in) {
+        try {
+            while (true) {
+                byte op = in.readByte();
+                if (op == Protocol.CHANGES) {
+                    int records = in.readInt();
+                    if (records < 0 || records > Protocol.MAX_BATCH_RECORDS) throw new IOException("bad batch size");
+                    onChanges(MaskBatch.readFrom(in, records));
+                    continue;
+                }
+
+                int id = in.readInt();
+                long result = in.readLong();
+                CompletableFuture<Long> reply = inflight.remove(id);
+                if (reply != null) reply.complete(result);
+            }
+        } catch (IOException e) {
+            synchronized (connectLock) {
+                disconnect(s);
+            }
+        }
+    }
+
+    private void onChanges(MaskBatch batch) {
+        synchronized (nearCache) {
+            batch.forEach((msb, lsb, mask) -> nearCache.replace(new UUID(msb, lsb), mask));
+        }
+        for (HideArmorState.MaskVisitor listener : listeners) {
+            try {
+                batch.forEach(listener);
+            } catch (RuntimeException e) {
+                System.err.println("HideHelmet: State listener failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private static long await(CompletableFuture<Long> reply) throws IOException {
+        try {
+            return reply.join();
+        } catch (CompletionException | CancellationException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof IOException io) throw io;
+            throw new IOException(cause.toString(), cause);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Payload {
+        void write(DataOutputStream out) throws IOException;
+    }
+}
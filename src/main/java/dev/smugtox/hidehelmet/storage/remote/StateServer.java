@@ -0,0 +1,166 @@
+package dev.smugtox.hidehelmet.storage.remote;
+
+import dev.smugtox.hidehelmet.storage.MaskBatch;
+import dev.smugtox.hidehelmet.storage.MaskJournal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Servidor de estado compartido, para probar el modo remoto en una sola maquina sin servicios externos.
+ * Guarda las mascaras en un MaskJournal propio y reenvia los cambios de cada nodo a los demas.
+ * Un hilo por nodo conectado: esta pensado para unos pocos servidores, no para clientes.
+ */
+public final class StateServer implements Closeable {
+
+    private final MaskJournal store;
+    private final ServerSocket socket;
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+    private final Thread acceptThread;
+    private volatile boolean closed;
+
+    /**
+     * @param port 0 para un puerto libre (ver getPort)
+     */
+    public StateServer(int port, Path dir) throws IOException {
+        this(port, dir, MaskJournal.DEFAULT_MIN_COMPACT_BYTES);
+    }
+
+    /**
+     * @param minCompactBytes tamano minimo del journal antes de compactarlo (ver MaskJournal)
+     */
+    public StateServer(int port, Path dir, long minCompactBytes) throws IOException {
+        Files.createDirectories(dir);
+        this.store = new MaskJournal(dir, minCompactBytes);
+        store.open();
+        this.socket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+
+        this.acceptThread = new Thread(this::acceptLoop, "HideHelmet-StateServer");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    public int getPort() {
+        return socket.getLocalPort();
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        socket.close();
+        for (Connection connection : connections) {
+            connection.close();
+        }
+        store.close();
+    }
+
+    private void acceptLoop() {
+        while (!closed) {
+            try {
+                Socket client = socket.accept();
+                client.setTcpNoDelay(true);
+                Connection connection = new Connection(client);
+                connections.add(connection);
+
+                Thread t = new Thread(connection::serve, "HideHelmet-StateServer-" + client.getPort());
+                t.setDaemon(true);
+                t.start();
+            } catch (IOException e) {
+                if (!closed) System.err.println("HideHelmet: Failed to accept state connection: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Reenvia un lote a todos los nodos menos al que lo escribio.
+     */
+    private void broadcast(Connection from, MaskBatch batch) {
+        for (Connection connection : connections) {
+            if (connection == from) continue;
+            try {
+                connection.sendChanges(batch);
+            } catch (IOException e) {
+                connection.close();
+            }
+        }
+    }
+
+    private final class Connection {
+        private final Socket client;
+        private DataOutputStream out;
+
+        Connection(Socket client) {
+            this.client = client;
+        }
+
+        void serve() {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(client.getInputStream()))) {
+                synchronized (this) {
+                    out = new DataOutputStream(new BufferedOutputStream(client.getOutputStream()));
+                }
+                if (in.readInt() != Protocol.MAGIC) throw new IOException("bad handshake");
+
+                while (!closed) {
+                    byte op = in.readByte();
+                    int id = in.readInt();
+                    long result;
+                    switch (op) {
+                        case Protocol.HELLO -> result = store.size();
+                        case Protocol.GET -> result = store.lookup(new UUID(in.readLong(), in.readLong()));
+                        case Protocol.PUT -> {
+                            int records = in.readInt();
+                            if (records < 0 || records > Protocol.MAX_BATCH_RECORDS) throw new IOException("bad batch size");
+                            MaskBatch batch = MaskBatch.readFrom(in, records);
+                            result = store.append(batch);
+                            broadcast(this, batch);
+                        }
+                        default -> throw new IOException("unknown op " + op);
+                    }
+                    reply(op, id, result);
+                }
+            } catch (EOFException ignored) {
+                // el nodo cerro la conexion
+            } catch (IOException e) {
+                if (!closed) System.err.println("HideHelmet: State connection failed: " + e.getMessage());
+            } finally {
+                close();
+            }
+        }
+
+        synchronized void reply(byte op, int id, long result) throws IOException {
+            out.writeByte(op);
+            out.writeInt(id);
+            out.writeLong(result);
+            out.flush();
+        }
+
+        synchronized void sendChanges(MaskBatch batch) throws IOException {
+            if (out == null) return;
+            out.writeByte(Protocol.CHANGES);
+            out.writeInt(batch.size());
+            batch.writeTo(out);
+            out.flush();
+        }
+
+        void close() {
+            connections.remove(this);
+            try {
+                client.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
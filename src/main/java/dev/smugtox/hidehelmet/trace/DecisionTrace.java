@@ -0,0 +1,103 @@
+package dev.smugtox.hidehelmet.trace;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ring buffer de tamano fijo con las ultimas decisiones tomadas para un jugador.
+ *
+ * Todo se reserva al crearlo: escribir es un getAndIncrement y unas escrituras en arrays,
+ * sin locks ni objetos nuevos (label y detail son Strings constantes). Varios hilos pueden
+ * escribir a la vez (mundo, scheduler, comandos). Cada slot lleva su numero de secuencia:
+ * el lector descarta los slots que se estaban sobrescribiendo mientras los leia.
+ */
+public final class DecisionTrace {
+
+    private static final VarHandle SEQS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final TraceKind[] KINDS = TraceKind.values();
+    private static final long WRITING = -1;
+
+    private final int mask;
+    private final AtomicLong cursor = new AtomicLong();
+    private final long[] seqs;
+    private final long[] nanos;
+    private final byte[] kinds;
+    private final String[] labels;
+    private final String[] details;
+    private final int[] values;
+
+    /**
+     * @param capacity potencia de 2
+     */
+    public DecisionTrace(int capacity) {
+        if (Integer.bitCount(capacity) != 1) throw new IllegalArgumentException("capacity must be a power of 2");
+        this.mask = capacity - 1;
+        this.seqs = new long[capacity];
+        this.nanos = new long[capacity];
+        this.kinds = new byte[capacity];
+        this.labels = new String[capacity];
+        this.details = new String[capacity];
+        this.values = new int[capacity];
+        Arrays.fill(seqs, WRITING);
+    }
+
+    public void record(TraceKind kind, String label, String detail, int value) {
+        long seq = cursor.getAndIncrement();
+        int i = (int) (seq & mask);
+
+        SEQS.setVolatile(seqs, i, WRITING);
+        nanos[i] = System.nanoTime();
+        kinds[i] = (byte) kind.ordinal();
+        labels[i] = label;
+        details[i] = detail;
+        values[i] = value;
+        SEQS.setRelease(seqs, i, seq);
+    }
+
+    /**
+     * Entradas en orden, de la mas antigua a la mas nueva. Se salta las que se estan escribiendo.
+     */
+    public List<Entry> snapshot() {
+        long end = cursor.get();
+        long start = Math.max(0, end - (mask + 1));
+        List<Entry> out = new ArrayList<>((int) (end - start));
+
+        for (long seq = start; seq < end; seq++) {
+            int i = (int) (seq & mask);
+            if ((long) SEQS.getAcquire(seqs, i) != seq) continue;
+
+            long t = nanos[i];
+            int k = kinds[i];
+            String label = labels[i];
+            String detail = details[i];
+            int value = values[i];
+
+            VarHandle.acquireFence();
+            if ((long) SEQS.getVolatile(seqs, i) != seq) continue; // sobrescrito mientras leiamos
+            out.add(new Entry(seq, t, KINDS[k], label, detail, value));
+        }
+        return out;
+    }
+
+    public static final class Entry {
+        public final long seq;
+        public final long nanos;
+        public final TraceKind kind;
+        public final String label;
+        public final String detail;
+        public final int value;
+
+        Entry(long seq, long nanos, TraceKind kind, String label, String detail, int value) {
+            this.seq = seq;
+            this.nanos = nanos;
+            this.kind = kind;
+            this.label = label;
+            this.detail = detail;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package dev.smugtox.hidehelmet.trace;
+
+/**
+ * Tipo de entrada del trace de un jugador.
+ */
+public enum TraceKind {
+    /** Evento del servidor en un handler de fallback. label = evento, detail = InteractionType. */
+    TRIGGER,
+    /** Peticion de invalidacion. label = prioridad, detail = IMMEDIATE/DEFERRED/COALESCED, value = cooldown ms. */
+    INVALIDATE,
+    /** Invalidacion pendiente descartada. label = motivo. */
+    DROPPED,
+    /** Invalidacion ejecutada en el hilo del mundo. label = self/network. */
+    EXECUTED,
+    /** Equipment propio saliendo hacia el cliente. label = rewritten/deduped/unchanged, value = mascara. */
+    EQUIPMENT,
+    /** Cambio de mascara. label = causa, value = mascara nueva. */
+    MASK
+}
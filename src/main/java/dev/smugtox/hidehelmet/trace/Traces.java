@@ -0,0 +1,49 @@
+package dev.smugtox.hidehelmet.trace;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Traces activos por jugador. Con ninguno activo, get es una lectura de un volatile.
+ */
+public final class Traces {
+
+    public static final int CAPACITY = 256;
+
+    private static final Map<UUID, DecisionTrace> TRACES = new ConcurrentHashMap<>();
+    private static volatile boolean active;
+
+    private Traces() {}
+
+    /**
+     * Empieza a registrar para el jugador (vacia el trace anterior).
+     */
+    public static void enable(UUID uuid) {
+        TRACES.put(uuid, new DecisionTrace(CAPACITY));
+        active = true;
+    }
+
+    /**
+     * @return el trace que se estaba registrando, o null
+     */
+    public static DecisionTrace disable(UUID uuid) {
+        DecisionTrace trace = TRACES.remove(uuid);
+        active = !TRACES.isEmpty();
+        return trace;
+    }
+
+    /**
+     * @return el trace del jugador, o null si no esta activo
+     */
+    public static DecisionTrace get(UUID uuid) {
+        if (!active) return null;
+        return TRACES.get(uuid);
+    }
+
+    public static void record(UUID uuid, TraceKind kind, String label, String detail, int value) {
+        if (!active) return;
+        DecisionTrace trace = TRACES.get(uuid);
+        if (trace != null) trace.record(kind, label, detail, value);
+    }
+}
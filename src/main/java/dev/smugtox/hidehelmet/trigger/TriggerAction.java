@@ -0,0 +1,28 @@
+package dev.smugtox.hidehelmet.trigger;
+
+import dev.smugtox.hidehelmet.invalidate.InvalidateScheduler;
+
+/**
+ * Que hacer cuando salta un trigger para un jugador con alguna pieza oculta.
+ */
+public enum TriggerAction {
+    /** Invalidar ya, sin cooldown. */
+    IMMEDIATE(InvalidateScheduler.Priority.PICKUP),
+    /** Invalidar respetando el cooldown (se fusiona con las siguientes). */
+    DEFERRED(InvalidateScheduler.Priority.DEFERRED),
+    /** No hacer nada. */
+    IGNORE(null);
+
+    private final InvalidateScheduler.Priority priority;
+
+    TriggerAction(InvalidateScheduler.Priority priority) {
+        this.priority = priority;
+    }
+
+    /**
+     * Prioridad de la invalidacion, o null para IGNORE.
+     */
+    public InvalidateScheduler.Priority priority() {
+        return priority;
+    }
+}
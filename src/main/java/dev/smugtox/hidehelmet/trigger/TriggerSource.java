@@ -0,0 +1,29 @@
+package dev.smugtox.hidehelmet.trigger;
+
+/**
+ * Eventos del servidor que pueden re-sincronizar el equipo. El nombre en config es el de la clase del evento.
+ */
+public enum TriggerSource {
+    INVENTORY_CHANGE("LivingEntityInventoryChangeEvent"),
+    MOUSE_BUTTON("PlayerMouseButtonEvent"),
+    CRAFT("PlayerCraftEvent"),
+    /** Se decide por InteractionType. */
+    INTERACT("PlayerInteractEvent");
+
+    private final String eventName;
+
+    TriggerSource(String eventName) {
+        this.eventName = eventName;
+    }
+
+    public String getEventName() {
+        return eventName;
+    }
+
+    static TriggerSource byEventName(String name) {
+        for (TriggerSource source : values()) {
+            if (source.eventName.equalsIgnoreCase(name)) return source;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,138 @@
+package dev.smugtox.hidehelmet.trigger;
+
+import com.hypixel.hytale.protocol.InteractionType;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Tabla de triggers compilada: evento -> accion y, para PlayerInteractEvent, InteractionType -> accion.
+ * Inmutable; se consulta con un acceso a array por ordinal. Para cambiarla se compila otra.
+ *
+ * En config ("triggers" en el bloque config):
+ * <pre>
+ * "triggers": {
+ *   "PlayerMouseButtonEvent": "ignore",
+ *   "PlayerCraftEvent": "deferred",
+ *   "PlayerInteractEvent": {"Pickup": "immediate", "Primary": "deferred", "default": "ignore"}
+ * }
+ * </pre>
+ * Un evento o InteractionType que no aparece mantiene la accion por defecto (la de siempre).
+ * "PlayerInteractEvent" tambien acepta una sola accion para todos los tipos.
+ */
+public final class TriggerTable {
+
+    private static final InteractionType[] INTERACTION_TYPES = InteractionType.values();
+
+    private final TriggerAction[] sources;
+    private final TriggerAction[] interactions;
+
+    private TriggerTable(EnumMap<TriggerSource, TriggerAction> sources, EnumMap<InteractionType, TriggerAction> interactions) {
+        this.sources = new TriggerAction[TriggerSource.values().length];
+        for (TriggerSource source : TriggerSource.values()) {
+            this.sources[source.ordinal()] = sources.getOrDefault(source, TriggerAction.IGNORE);
+        }
+        this.interactions = new TriggerAction[INTERACTION_TYPES.length];
+        for (InteractionType type : INTERACTION_TYPES) {
+            this.interactions[type.ordinal()] = interactions.getOrDefault(type, TriggerAction.IGNORE);
+        }
+    }
+
+    public TriggerAction action(TriggerSource source) {
+        return sources[source.ordinal()];
+    }
+
+    public TriggerAction action(InteractionType type) {
+        return interactions[type.ordinal()];
+    }
+
+    /**
+     * Tabla sin config: la que estaba fija en el codigo.
+     */
+    public static TriggerTable defaults(boolean pickupImmediate) {
+        return compile(null, pickupImmediate);
+    }
+
+    /**
+     * Compila la seccion "triggers" de la config (tal y como la deja Gson: String o Map por evento).
+     * Las entradas desconocidas se saltan con un aviso.
+     */
+    public static TriggerTable compile(Map<String, Object> config, boolean pickupImmediate) {
+        EnumMap<TriggerSource, TriggerAction> sources = new EnumMap<>(TriggerSource.class);
+        sources.put(TriggerSource.INVENTORY_CHANGE, TriggerAction.DEFERRED);
+        sources.put(TriggerSource.MOUSE_BUTTON, TriggerAction.DEFERRED);
+        sources.put(TriggerSource.CRAFT, TriggerAction.DEFERRED);
+
+        EnumMap<InteractionType, TriggerAction> interactions = new EnumMap<>(InteractionType.class);
+        interactions.put(InteractionType.Pickup, pickupImmediate ? TriggerAction.IMMEDIATE : TriggerAction.DEFERRED);
+        for (InteractionType type : new InteractionType[] {
+                InteractionType.Primary, InteractionType.Secondary, InteractionType.Use, InteractionType.Pick,
+                InteractionType.SwapTo, InteractionType.SwapFrom, InteractionType.Wielding, InteractionType.Equipped}) {
+            interactions.put(type, TriggerAction.DEFERRED);
+        }
+
+        if (config != null) {
+            for (Map.Entry<String, Object> entry : config.entrySet()) {
+                TriggerSource source = TriggerSource.byEventName(entry.getKey());
+                if (source == null) {
+                    System.err.println("HideHelmet: Unknown trigger event: " + entry.getKey());
+                    continue;
+                }
+                if (source == TriggerSource.INTERACT) {
+                    compileInteractions(entry.getValue(), interactions);
+                    continue;
+                }
+                TriggerAction action = parseAction(entry.getValue());
+                if (action != null) sources.put(source, action);
+            }
+        }
+        return new TriggerTable(sources, interactions);
+    }
+
+    private static void compileInteractions(Object value, EnumMap<InteractionType, TriggerAction> interactions) {
+        if (!(value instanceof Map<?, ?> map)) {
+            TriggerAction all = parseAction(value);
+            if (all == null) return;
+            for (InteractionType type : INTERACTION_TYPES) interactions.put(type, all);
+            return;
+        }
+
+        // "default" primero: los tipos concretos lo sobrescriben
+        Object fallback = map.get("default");
+        if (fallback != null) {
+            TriggerAction action = parseAction(fallback);
+            if (action != null) {
+                for (InteractionType type : INTERACTION_TYPES) interactions.put(type, action);
+            }
+        }
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            String name = String.valueOf(entry.getKey());
+            if ("default".equals(name)) continue;
+            InteractionType type = interactionType(name);
+            if (type == null) {
+                System.err.println("HideHelmet: Unknown trigger interaction type: " + name);
+                continue;
+            }
+            TriggerAction action = parseAction(entry.getValue());
+            if (action != null) interactions.put(type, action);
+        }
+    }
+
+    private static InteractionType interactionType(String name) {
+        for (InteractionType type : INTERACTION_TYPES) {
+            if (type.name().equalsIgnoreCase(name)) return type;
+        }
+        return null;
+    }
+
+    private static TriggerAction parseAction(Object value) {
+        if (value instanceof String s) {
+            try {
+                return TriggerAction.valueOf(s.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException ignored) {}
+        }
+        System.err.println("HideHelmet: Unknown trigger action: " + value);
+        return null;
+    }
+}
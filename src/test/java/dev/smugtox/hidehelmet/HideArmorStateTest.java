@@ -0,0 +1,50 @@
+package dev.smugtox.hidehelmet;
+
+import dev.smugtox.hidehelmet.change.ChangeCause;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HideArmorStateTest {
+
+    @Test
+    void adminClearOfEvictedPlayerIsSaved() {
+        UUID uuid = UUID.randomUUID();
+        HideArmorState.setMask(uuid, 5);
+        drain();
+        assertTrue(HideArmorState.evict(uuid));
+
+        // en disco tiene 5; en memoria ya no esta (0)
+        HideArmorState.setMasks(List.of(uuid), 0, ChangeCause.ADMIN);
+        Map<UUID, Integer> saved = drain();
+        assertEquals(Integer.valueOf(0), saved.get(uuid));
+    }
+
+    @Test
+    void setMasksMarksEveryTargetForSaving() {
+        UUID loaded = UUID.randomUUID();
+        UUID same = UUID.randomUUID();
+        UUID unknown = UUID.randomUUID();
+        HideArmorState.setMaskSilently(loaded, 3);
+        HideArmorState.setMaskSilently(same, 15);
+        drain();
+
+        assertEquals(2, HideArmorState.setMasks(List.of(loaded, same, unknown), 15, ChangeCause.ADMIN));
+        Map<UUID, Integer> saved = drain();
+        assertEquals(Integer.valueOf(15), saved.get(loaded));
+        assertEquals(Integer.valueOf(15), saved.get(same));
+        assertEquals(Integer.valueOf(15), saved.get(unknown));
+    }
+
+    private static Map<UUID, Integer> drain() {
+        Map<UUID, Integer> saved = new HashMap<>();
+        HideArmorState.drainChanges((msb, lsb, mask) -> saved.put(new UUID(msb, lsb), mask));
+        return saved;
+    }
+}
@@ -0,0 +1,227 @@
+package dev.smugtox.hidehelmet;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MaskTableTest {
+
+    @Test
+    void putReturnsPreviousMaskAndGetSeesLatest() {
+        MaskTable table = new MaskTable();
+        assertEquals(0, table.put(1, 2, 5, true));
+        assertEquals(5, table.get(1, 2));
+        assertEquals(5, table.put(1, 2, 9, true));
+        assertEquals(9, table.get(1, 2));
+        assertEquals(0, table.get(2, 1));
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    void cleanZeroIsNotStoredButDirtyZeroIs() {
+        MaskTable table = new MaskTable();
+        table.put(1, 1, 0, false);
+        assertEquals(-1, table.find(1, 1));
+
+        table.put(2, 2, 0, true);
+        assertEquals(0, table.find(2, 2));
+        assertEquals(1, countDirty(table));
+        assertEquals(0, table.size());
+    }
+
+    @Test
+    void drainDeliversEachDirtyEntryOnce() {
+        MaskTable table = new MaskTable();
+        table.put(1, 1, 3, true);
+        table.put(2, 2, 4, false);
+        table.put(3, 3, 7, true);
+        table.put(3, 3, 0, true);
+
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(2, table.drainDirty((msb, lsb, mask) -> drained.add(mask)));
+        assertTrue(drained.contains(3));
+        assertTrue(drained.contains(0));
+        assertEquals(0, countDirty(table));
+    }
+
+    @Test
+    void putIfCleanDoesNotOverwriteUnsavedChange() {
+        MaskTable table = new MaskTable();
+        table.put(1, 1, 3, true);
+        assertFalse(table.putIfClean(1, 1, 9));
+        assertEquals(3, table.get(1, 1));
+
+        table.drainDirty((msb, lsb, mask) -> {});
+        assertTrue(table.putIfClean(1, 1, 9));
+        assertEquals(9, table.get(1, 1));
+        assertEquals(0, countDirty(table));
+    }
+
+    @Test
+    void evictOnlyDropsSavedEntries() {
+        MaskTable table = new MaskTable();
+        table.put(1, 1, 6, true);
+        assertFalse(table.evict(1, 1));
+        assertEquals(6, table.get(1, 1));
+
+        table.drainDirty((msb, lsb, mask) -> {});
+        assertTrue(table.evict(1, 1));
+        assertEquals(0, table.get(1, 1));
+        assertEquals(0, table.size());
+        assertTrue(table.evict(42, 42));
+    }
+
+    @Test
+    void evictedSlotIsReusedForTheSameKey() {
+        MaskTable table = new MaskTable();
+        table.put(1, 1, 6, false);
+        assertTrue(table.evict(1, 1));
+        assertEquals(0, table.put(1, 1, 2, true));
+        assertEquals(2, table.get(1, 1));
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    void dirtyPutOfTheSameMaskIsStillSaved() {
+        MaskTable table = new MaskTable();
+        table.put(1, 1, 6, false);
+        assertTrue(table.evict(1, 1));
+
+        // desalojado: en memoria es 0, en disco sigue el 6
+        assertEquals(0, table.put(1, 1, 0, true));
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(1, table.drainDirty((msb, lsb, mask) -> drained.add(mask)));
+        assertEquals(List.of(0), drained);
+
+        table.put(2, 2, 4, false);
+        table.put(2, 2, 4, false);
+        assertEquals(0, countDirty(table));
+        table.put(2, 2, 4, true);
+        assertEquals(1, countDirty(table));
+    }
+
+    @Test
+    void tombstonesAreDroppedOnRehash() {
+        MaskTable table = new MaskTable();
+        // jugadores que entran y salen: el numero vivo no crece, la tabla tampoco
+        for (long k = 0; k < 200_000; k++) {
+            table.put(k, ~k, 5, false);
+            assertTrue(table.evict(k, ~k));
+        }
+        assertEquals(0, table.size());
+        assertTrue(table.capacity() <= 16 * 64, "capacity " + table.capacity());
+    }
+
+    @Test
+    void rehashKeepsEveryEntryAndLoadFactor() {
+        MaskTable table = new MaskTable();
+        int n = 100_000;
+        for (int k = 0; k < n; k++) {
+            table.put(k, k * 31L, 1 + (k % 15), k % 2 == 0);
+        }
+        for (int k = 0; k < n; k++) {
+            assertEquals(1 + (k % 15), table.get(k, k * 31L));
+        }
+        assertEquals(n, table.size());
+        assertEquals(n / 2, countDirty(table));
+
+        // 0.75 de carga maxima: nunca menos de un tercio ocupado tras crecer
+        int capacity = table.capacity();
+        assertTrue(capacity * 3L / 4 >= n, "capacity " + capacity);
+        assertTrue(capacity <= 3L * n, "capacity " + capacity);
+    }
+
+    @Test
+    void readersNeverSeeTornOrMissingEntriesDuringWritesAndRehash() throws Exception {
+        MaskTable table = new MaskTable();
+        int stable = 4096;
+        for (int k = 0; k < stable; k++) {
+            table.put(k, -k, 1, false);
+        }
+
+        int writers = 4;
+        int readers = 4;
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicReference<String> failure = new AtomicReference<>();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        int[][] lastWritten = new int[writers][];
+
+        for (int w = 0; w < writers; w++) {
+            int id = w;
+            lastWritten[id] = new int[stable];
+            threads.add(new Thread(() -> {
+                await(start);
+                int round = 0;
+                long fresh = 1_000_000L * (id + 1);
+                while (!stop.get()) {
+                    // cada writer es dueno de las claves k con k % writers == id; nunca las pone a 0
+                    for (int k = id; k < stable; k += writers) {
+                        int mask = 1 + ((k + round) % 15);
+                        table.put(k, -k, mask, true);
+                        lastWritten[id][k] = mask;
+                    }
+                    // claves nuevas para forzar rehashes con lectores dentro
+                    for (int j = 0; j < 512; j++) {
+                        table.put(fresh, fresh, 3, true);
+                        fresh++;
+                    }
+                    round++;
+                }
+            }));
+        }
+        for (int r = 0; r < readers; r++) {
+            threads.add(new Thread(() -> {
+                await(start);
+                while (!stop.get()) {
+                    for (int k = 0; k < stable; k++) {
+                        int mask = table.get(k, -k);
+                        if (mask < 1 || mask > 15) {
+                            failure.compareAndSet(null, "key " + k + " read " + mask);
+                            return;
+                        }
+                    }
+                }
+            }));
+        }
+
+        threads.forEach(Thread::start);
+        start.countDown();
+        Thread.sleep(1500);
+        stop.set(true);
+        for (Thread t : threads) {
+            t.join(10_000);
+        }
+
+        assertNull(failure.get());
+        for (int w = 0; w < writers; w++) {
+            for (int k = w; k < stable; k += writers) {
+                assertEquals(lastWritten[w][k], table.get(k, -k));
+            }
+        }
+    }
+
+    /**
+     * Cuenta las entradas dirty drenandolas (limpia la marca).
+     */
+    private static int countDirty(MaskTable table) {
+        return table.drainDirty((msb, lsb, mask) -> {});
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
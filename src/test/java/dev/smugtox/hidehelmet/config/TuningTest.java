@@ -0,0 +1,29 @@
+package dev.smugtox.hidehelmet.config;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TuningTest {
+
+    @Test
+    void configWithMinAboveMaxKeepsDefaultCooldowns() {
+        PluginConfig config = new PluginConfig();
+        config.minInvalidateCooldownMs = 600L;
+        config.maxInvalidateCooldownMs = 200L;
+        config.invalidateCooldownMs = 120L;
+
+        Tuning tuning = Tuning.from(config);
+        assertEquals(Tuning.DEFAULTS.getMinInvalidateCooldownMs(), tuning.getMinInvalidateCooldownMs());
+        assertEquals(Tuning.DEFAULTS.getMaxInvalidateCooldownMs(), tuning.getMaxInvalidateCooldownMs());
+        // el resto de la config si se aplica
+        assertEquals(120L, tuning.getInvalidateCooldownMs());
+    }
+
+    @Test
+    void hhtuneRejectsMinAboveMax() {
+        assertThrows(IllegalArgumentException.class,
+                () -> Tuning.DEFAULTS.with("minInvalidateCooldownMs", "600"));
+    }
+}
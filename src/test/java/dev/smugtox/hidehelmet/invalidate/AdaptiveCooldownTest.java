@@ -0,0 +1,73 @@
+package dev.smugtox.hidehelmet.invalidate;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveCooldownTest {
+
+    private static final long BASE = 150;
+    private final AdaptiveCooldown cooldown = new AdaptiveCooldown(75, 500);
+
+    @Test
+    void idlePlayerGetsBaseCooldown() {
+        AdaptiveCooldown.Rates rates = new AdaptiveCooldown.Rates();
+        // un evento cada 10 s y uno por segundo: ninguno es rafaga
+        long now = 1;
+        for (int i = 0; i < 5; i++, now += 10_000) {
+            assertEquals(BASE, cooldown.onEvent(rates, now, BASE));
+        }
+        for (int i = 0; i < 20; i++, now += 1000) {
+            assertEquals(BASE, cooldown.onEvent(rates, now, BASE));
+        }
+    }
+
+    @Test
+    void shortBurstGetsMinCooldown() {
+        AdaptiveCooldown.Rates rates = new AdaptiveCooldown.Rates();
+        long now = 1;
+        assertEquals(BASE, cooldown.onEvent(rates, now, BASE));
+        long last = 0;
+        for (int i = 0; i < 4; i++) {
+            now += 50;
+            last = cooldown.onEvent(rates, now, BASE);
+        }
+        assertEquals(75, last);
+
+        // tras la rafaga, en reposo vuelve al base
+        assertEquals(BASE, cooldown.onEvent(rates, now + 5000, BASE));
+    }
+
+    @Test
+    void burstAroundZeroClockIsStillABurst() {
+        // los ms salen de nanoTime: pueden ser negativos y pasar por 0
+        AdaptiveCooldown.Rates rates = new AdaptiveCooldown.Rates();
+        long now = -100;
+        assertEquals(BASE, cooldown.onEvent(rates, now, BASE));
+        long last = 0;
+        for (int i = 0; i < 3; i++) {
+            now += 50;
+            last = cooldown.onEvent(rates, now, BASE);
+        }
+        // el evento en 0 no puede contar como "nunca visto"
+        assertEquals(50, now);
+        assertEquals(75, last);
+    }
+
+    @Test
+    void sustainedSpamMovesTowardMax() {
+        AdaptiveCooldown.Rates rates = new AdaptiveCooldown.Rates();
+        long now = 1;
+        long previous = 0;
+        long last = 0;
+        // 20 eventos/s durante 10 s
+        for (int i = 0; i < 200; i++, now += 50) {
+            previous = last;
+            last = cooldown.onEvent(rates, now, BASE);
+        }
+        assertTrue(last > BASE, "cooldown " + last);
+        assertTrue(last >= previous, "cooldown " + last + " after " + previous);
+        assertEquals(500, last);
+    }
+}
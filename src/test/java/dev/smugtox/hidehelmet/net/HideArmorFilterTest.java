@@ -0,0 +1,99 @@
+package dev.smugtox.hidehelmet.net;
+
+import com.hypixel.hytale.protocol.ComponentUpdate;
+import com.hypixel.hytale.protocol.ComponentUpdateType;
+import com.hypixel.hytale.protocol.EntityUpdate;
+import com.hypixel.hytale.protocol.Equipment;
+import com.hypixel.hytale.protocol.Packet;
+import com.hypixel.hytale.protocol.packets.entities.EntityUpdates;
+import com.hypixel.hytale.server.core.receiver.IPacketReceiver;
+import dev.smugtox.hidehelmet.HideArmorState;
+import dev.smugtox.hidehelmet.filter.FilterPipeline;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HideArmorFilterTest {
+
+    private static final int SELF = 7;
+    private static final int HEAD = 1 << HideArmorState.SLOT_HEAD;
+
+    private final UUID viewer = UUID.randomUUID();
+    private final List<Packet> sent = new ArrayList<>();
+    private final FilterPipeline pipeline = new FilterPipeline(new IPacketReceiver() {
+        @Override
+        public void write(Packet packet) {
+            sent.add(packet);
+        }
+
+        @Override
+        public void writeNoCache(Packet packet) {
+            sent.add(packet);
+        }
+    });
+    private final HideArmorFilter filter = new HideArmorFilter(pipeline, viewer, SELF);
+
+    @AfterEach
+    void release() {
+        HideArmorState.setMaskSilently(viewer, 0);
+        HideArmorState.releaseHandle(viewer);
+    }
+
+    @Test
+    void refreshSelfSendsLastEquipmentMasked() {
+        pipeline.add(filter);
+        HideArmorState.setMaskSilently(viewer, HEAD);
+        pipeline.write(selfEquipment("Helmet_Iron", "Chest_Iron"));
+
+        sent.clear();
+        assertTrue(filter.refreshSelf());
+        assertArrayEquals(new String[] { "", "Chest_Iron", "", "" }, armorOf(sent.get(0)));
+    }
+
+    @Test
+    void refreshSelfNeverResendsArmorSeenBeforeUnhide() {
+        pipeline.add(filter);
+        HideArmorState.setMaskSilently(viewer, HEAD);
+        pipeline.write(selfEquipment("Helmet_Iron", "Chest_Iron"));
+
+        // unhide, cambio de armadura (sale sin tocar), hide otra vez
+        HideArmorState.setMaskSilently(viewer, 0);
+        pipeline.write(selfEquipment("Helmet_Gold", ""));
+        HideArmorState.setMaskSilently(viewer, HEAD);
+
+        sent.clear();
+        if (filter.refreshSelf()) {
+            assertArrayEquals(new String[] { "", "", "", "" }, armorOf(sent.get(0)));
+        } else {
+            // sin Equipment valido: el scheduler invalida normal
+            assertEquals(0, sent.size());
+        }
+        assertFalse(sent.stream().anyMatch(p -> armorOf(p)[1].equals("Chest_Iron")));
+    }
+
+    private static EntityUpdates selfEquipment(String head, String chest) {
+        Equipment equipment = new Equipment();
+        equipment.armorIds = new String[] { head, chest, "", "" };
+        ComponentUpdate cu = new ComponentUpdate();
+        cu.type = ComponentUpdateType.Equipment;
+        cu.equipment = equipment;
+        EntityUpdate upd = new EntityUpdate();
+        upd.networkId = SELF;
+        upd.updates = new ComponentUpdate[] { cu };
+        EntityUpdates packet = new EntityUpdates();
+        packet.updates = new EntityUpdate[] { upd };
+        return packet;
+    }
+
+    private static String[] armorOf(Packet packet) {
+        return ((EntityUpdates) packet).updates[0].updates[0].equipment.armorIds;
+    }
+}
@@ -0,0 +1,36 @@
+package dev.smugtox.hidehelmet.net;
+
+import com.hypixel.hytale.protocol.Equipment;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class MaskedEquipmentCacheTest {
+
+    @Test
+    void hitRequiresSameContentNotSameInstance() {
+        Equipment source = equipment("Helmet_Iron", "Chest_Iron");
+        Equipment masked = equipment("", "Chest_Iron");
+        MaskedEquipmentCache.put(source, 42L, 1, masked);
+
+        assertSame(masked, MaskedEquipmentCache.get(equipment("Helmet_Iron", "Chest_Iron"), 42L, 1));
+        assertNull(MaskedEquipmentCache.get(source, 42L, 3));
+    }
+
+    @Test
+    void mutatedSourceIsAMiss() {
+        Equipment source = equipment("Helmet_Gold", "Chest_Gold");
+        MaskedEquipmentCache.put(source, 7L, 1, equipment("", "Chest_Gold"));
+
+        // el servidor reutiliza el DTO con otras piezas: misma instancia, misma huella forzada
+        source.armorIds[1] = "Chest_Diamond";
+        assertNull(MaskedEquipmentCache.get(source, 7L, 1));
+    }
+
+    private static Equipment equipment(String head, String chest) {
+        Equipment e = new Equipment();
+        e.armorIds = new String[] { head, chest, "", "" };
+        return e;
+    }
+}
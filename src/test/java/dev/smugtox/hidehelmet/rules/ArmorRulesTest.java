@@ -0,0 +1,36 @@
+package dev.smugtox.hidehelmet.rules;
+
+import dev.smugtox.hidehelmet.metrics.Metrics;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ArmorRulesTest {
+
+    private final ArmorRules rules = new ArmorRules(List.of(new ArmorRule("Helmet_*", 0x01, false)));
+
+    @Test
+    void equalIdsFromOtherInstancesHitTheCache() {
+        String id = new String("Helmet_Iron");
+        assertEquals(0x0E, rules.decision(id));
+
+        // mismo id, instancias distintas (como al deserializar un packet): no se evaluan otra vez
+        long evaluations = Metrics.ARMOR_RULE_EVALUATIONS.sum();
+        for (int i = 0; i < 10; i++) {
+            assertEquals(0x0E, rules.decision(new String("Helmet_Iron")));
+        }
+        assertEquals(evaluations, Metrics.ARMOR_RULE_EVALUATIONS.sum());
+    }
+
+    @Test
+    void internedIdTakesTheIdentityPath() {
+        String id = "Chest_Iron";
+        assertEquals(0x0F, rules.decision(new String(id)));
+
+        long interned = Metrics.ARMOR_RULE_INTERNED.sum();
+        assertEquals(0x0F, rules.decision(id));
+        assertEquals(interned, Metrics.ARMOR_RULE_INTERNED.sum());
+    }
+}
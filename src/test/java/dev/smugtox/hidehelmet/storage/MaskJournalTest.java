@@ -0,0 +1,209 @@
+package dev.smugtox.hidehelmet.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MaskJournalTest {
+
+    private static final UUID A = new UUID(1, 1);
+    private static final UUID B = new UUID(2, 2);
+    private static final UUID C = new UUID(3, 3);
+
+    @TempDir
+    Path dir;
+
+    private MaskJournal journal;
+
+    @AfterEach
+    void closeJournal() throws IOException {
+        if (journal != null) journal.close();
+    }
+
+    @Test
+    void replaysJournalOnOpen() throws IOException {
+        journal = open();
+        append(A, 3);
+        append(B, 5);
+        append(A, 7); // el ultimo gana
+        journal = reopen();
+
+        assertEquals(7, journal.lookup(A));
+        assertEquals(5, journal.lookup(B));
+        assertEquals(0, journal.lookup(C));
+    }
+
+    @Test
+    void tornTailIsDiscardedAndAppendsContinueAfterIt() throws IOException {
+        journal = open();
+        append(A, 3);
+        append(B, 5);
+        journal.close();
+        journal = null;
+
+        // crash a mitad de un append: 9 de los 17 bytes de un registro de C
+        Path file = dir.resolve("players.journal");
+        long intact = Files.size(file);
+        Files.write(file, new byte[] { 0, 0, 0, 0, 0, 0, 0, 3, 0 }, StandardOpenOption.APPEND);
+
+        journal = open();
+        assertEquals(3, journal.lookup(A));
+        assertEquals(5, journal.lookup(B));
+        assertEquals(0, journal.lookup(C));
+        assertEquals(intact, Files.size(file));
+
+        append(C, 9);
+        journal = reopen();
+        assertEquals(3, journal.lookup(A));
+        assertEquals(5, journal.lookup(B));
+        assertEquals(9, journal.lookup(C));
+    }
+
+    @Test
+    void compactionMergesJournalIntoSnapshot() throws IOException {
+        journal = open();
+        for (int i = 0; i < 1000; i++) {
+            append(new UUID(i, -i), 1 + (i % 15));
+        }
+        append(new UUID(7, -7), 0); // borrado
+
+        assertEquals(999, journal.compact());
+        assertFalse(Files.exists(dir.resolve("players.journal.old")));
+        assertEquals(999, journal.size());
+        assertEquals(0, journal.lookup(new UUID(7, -7)));
+        assertEquals(1 + (500 % 15), journal.lookup(new UUID(500, -500)));
+
+        // lo nuevo va al journal y gana sobre el snapshot
+        append(new UUID(500, -500), 15);
+        journal = reopen();
+        assertEquals(15, journal.lookup(new UUID(500, -500)));
+        for (int i = 0; i < 1000; i++) {
+            int expected = i == 7 ? 0 : i == 500 ? 15 : 1 + (i % 15);
+            assertEquals(expected, journal.lookup(new UUID(i, -i)));
+        }
+
+        // una segunda compactacion mezcla con el snapshot anterior
+        assertEquals(999, journal.compact());
+        journal = reopen();
+        assertEquals(15, journal.lookup(new UUID(500, -500)));
+    }
+
+    @Test
+    void journalFromAnOlderGenerationIsIgnored() throws IOException {
+        journal = open();
+        append(A, 3);
+        Path stale = dir.resolve("stale.journal");
+        Files.copy(dir.resolve("players.journal"), stale);
+
+        append(A, 6);
+        journal.compact();
+        journal.close();
+        journal = null;
+
+        // un journal de antes del snapshot no puede pisarlo
+        Files.copy(stale, dir.resolve("players.journal"), StandardCopyOption.REPLACE_EXISTING);
+        journal = open();
+        assertEquals(6, journal.lookup(A));
+
+        // y el journal nuevo arranca en la generacion del snapshot
+        append(B, 4);
+        journal = reopen();
+        assertEquals(6, journal.lookup(A));
+        assertEquals(4, journal.lookup(B));
+    }
+
+    @Test
+    void crashAfterRotationBeforeSnapshotKeepsOldJournal() throws IOException {
+        journal = open();
+        append(A, 3);
+        journal.compact();
+        append(B, 5);
+        append(A, 8);
+        journal.close();
+        journal = null;
+
+        // estado tras rotar el journal y antes de escribir el snapshot nuevo:
+        // .old con lo pendiente y un journal vacio de la generacion siguiente
+        Path current = dir.resolve("players.journal");
+        Files.move(current, dir.resolve("players.journal.old"));
+        writeEmptyJournal(current, 2); // snapshot en generacion 1
+
+        journal = open();
+        assertEquals(8, journal.lookup(A));
+        assertEquals(5, journal.lookup(B));
+
+        // la siguiente compactacion recoge el .old y lo borra
+        journal.compact();
+        assertFalse(Files.exists(dir.resolve("players.journal.old")));
+        journal = reopen();
+        assertEquals(8, journal.lookup(A));
+        assertEquals(5, journal.lookup(B));
+    }
+
+    @Test
+    void crashAfterSnapshotWriteBeforeJournalResetLosesNothing() throws IOException {
+        journal = open();
+        append(A, 3);
+        append(B, 5);
+        Path pending = dir.resolve("pending.journal");
+        Files.copy(dir.resolve("players.journal"), pending);
+
+        journal.compact();
+        append(A, 9); // posterior al snapshot
+        journal.close();
+        journal = null;
+
+        // el snapshot nuevo ya se renombro pero el journal rotado no se llego a borrar
+        Files.copy(pending, dir.resolve("players.journal.old"));
+        assertTrue(Files.exists(dir.resolve("players.snapshot")));
+
+        journal = open();
+        assertEquals(9, journal.lookup(A)); // el .old es de una generacion anterior: no pisa lo nuevo
+        assertEquals(5, journal.lookup(B));
+
+        journal.compact();
+        assertFalse(Files.exists(dir.resolve("players.journal.old")));
+        journal = reopen();
+        assertEquals(9, journal.lookup(A));
+        assertEquals(5, journal.lookup(B));
+    }
+
+    private MaskJournal open() throws IOException {
+        MaskJournal opened = new MaskJournal(dir);
+        opened.open();
+        return opened;
+    }
+
+    private MaskJournal reopen() throws IOException {
+        journal.close();
+        journal = null;
+        return open();
+    }
+
+    private void append(UUID uuid, int mask) throws IOException {
+        MaskBatch batch = new MaskBatch();
+        batch.add(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), mask);
+        journal.append(batch);
+    }
+
+    /**
+     * Journal sin registros: cabecera (magic "HHJ1", version, generacion).
+     */
+    private static void writeEmptyJournal(Path file, long generation) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(16);
+        header.putInt(0x48484A31).putInt(1).putLong(generation);
+        Files.write(file, header.array());
+    }
+}
@@ -0,0 +1,124 @@
+package dev.smugtox.hidehelmet.storage.remote;
+
+import dev.smugtox.hidehelmet.storage.MaskBatch;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StateServerTest {
+
+    private static final UUID PLAYER = new UUID(10, 20);
+
+    @TempDir
+    Path dir;
+
+    private final List<AutoCloseable> open = new ArrayList<>();
+
+    @AfterEach
+    void closeAll() throws Exception {
+        for (int i = open.size() - 1; i >= 0; i--) {
+            open.get(i).close();
+        }
+    }
+
+    @Test
+    @Timeout(30)
+    void putIsStoredAndForwardedToOtherNodes() throws Exception {
+        StateServer server = track(new StateServer(0, dir.resolve("server")));
+        RemoteStateBackend a = backend(server.getPort());
+        RemoteStateBackend b = backend(server.getPort());
+        assertEquals(0, a.open());
+        assertEquals(0, b.open());
+
+        LinkedBlockingQueue<Integer> changes = new LinkedBlockingQueue<>();
+        b.subscribe((msb, lsb, mask) -> {
+            if (msb == PLAYER.getMostSignificantBits() && lsb == PLAYER.getLeastSignificantBits()) changes.add(mask);
+        });
+
+        a.putAll(batch(PLAYER, 6));
+        a.flush();
+
+        // otro nodo lo lee del servidor y le llega el CHANGES
+        assertEquals(Integer.valueOf(6), b.get(PLAYER).get(5, TimeUnit.SECONDS));
+        assertEquals(Integer.valueOf(6), changes.poll(5, TimeUnit.SECONDS));
+        assertEquals(Integer.valueOf(0), b.get(new UUID(1, 2)).get(5, TimeUnit.SECONDS));
+
+        // y queda guardado: un nodo nuevo lo ve en HELLO y en GET
+        RemoteStateBackend c = backend(server.getPort());
+        assertEquals(1, c.open());
+        assertEquals(Integer.valueOf(6), c.get(PLAYER).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    @Timeout(30)
+    void failsFastWhileDisconnectedAndReconnectsInBackground() throws Exception {
+        int port = freePort();
+        RemoteStateBackend backend = backend(port);
+        assertThrows(IOException.class, backend::open);
+
+        // sin servidor: nada espera a un connect
+        long start = System.nanoTime();
+        CompletableFuture<Integer> miss = backend.get(new UUID(3, 4));
+        assertThrows(ExecutionException.class, () -> miss.get(1, TimeUnit.SECONDS));
+        backend.putAll(batch(PLAYER, 9));
+        assertThrows(IOException.class, backend::flush);
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1), "send waited for a connect");
+
+        // lo pendiente sigue en el buffer y se lee de ahi
+        assertEquals(Integer.valueOf(9), backend.get(PLAYER).get(1, TimeUnit.SECONDS));
+
+        StateServer server = track(new StateServer(port, dir.resolve("server")));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(15);
+        while (true) {
+            try {
+                backend.flush();
+                break;
+            } catch (IOException e) {
+                if (System.nanoTime() > deadline) throw e;
+                Thread.sleep(50);
+            }
+        }
+
+        RemoteStateBackend other = backend(server.getPort());
+        other.open();
+        assertEquals(Integer.valueOf(9), other.get(PLAYER).get(5, TimeUnit.SECONDS));
+    }
+
+    private RemoteStateBackend backend(int port) {
+        return track(new RemoteStateBackend("127.0.0.1", port, 10_000));
+    }
+
+    private <T extends AutoCloseable> T track(T closeable) {
+        open.add(closeable);
+        return closeable;
+    }
+
+    private static MaskBatch batch(UUID uuid, int mask) {
+        MaskBatch batch = new MaskBatch();
+        batch.add(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), mask);
+        return batch;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket probe = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            return probe.getLocalPort();
+        }
+    }
+}